@@ -0,0 +1,53 @@
+package bench.dfa;
+
+import fa.dfa.DFA;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures accepts over batches of random inputs, reported per input string.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AcceptsBenchmark {
+    static final int INPUTS = 1024;
+
+    @Param({"16", "1024", "65536"})
+    public int states;
+
+    @Param({"2", "26", "90"})
+    public int symbols;
+
+    @Param({"16", "256", "8192"})
+    public int length;
+
+    private DFA dfa;
+    private String[] inputs;
+
+    @Setup
+    public void setUp() {
+        dfa = RandomDFA.build(states, symbols, RandomDFA.SEED);
+        inputs = RandomDFA.inputs(INPUTS, length, symbols, RandomDFA.SEED + 1);
+        dfa.accepts("");                                //Compile before measuring
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void accepts(Blackhole blackhole) {
+        for (String input : inputs) {
+            blackhole.consume(dfa.accepts(input));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public int countAccepted() {
+        return dfa.countAccepted(inputs);
+    }
+}
@@ -0,0 +1,51 @@
+package bench.dfa;
+
+import fa.dfa.DFA;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a DFA through addState and addTransition, and the cost of
+ * swap and toString on the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructionBenchmark {
+    @Param({"16", "1024", "16384"})
+    public int states;
+
+    @Param({"2", "26", "90"})
+    public int symbols;
+
+    private DFA dfa;
+
+    @Setup
+    public void setUp() {
+        dfa = RandomDFA.build(states, symbols, RandomDFA.SEED);
+    }
+
+    @Benchmark
+    public DFA build() {
+        return RandomDFA.build(states, symbols, RandomDFA.SEED);
+    }
+
+    @Benchmark
+    public DFA swap() {
+        return dfa.swap(RandomDFA.FIRST_SYMBOL, (char) (RandomDFA.FIRST_SYMBOL + symbols - 1));
+    }
+
+    @Benchmark
+    public boolean swapAndAccept() {
+        return dfa.swap(RandomDFA.FIRST_SYMBOL, (char) (RandomDFA.FIRST_SYMBOL + symbols - 1)).accepts("");
+    }
+
+    @Benchmark
+    public String toStringDFA() {
+        return dfa.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package bench.dfa;
+
+import fa.dfa.DFA;
+
+import java.util.Random;
+
+/**
+ * Builds the random automata and inputs used by the benchmarks.
+ * States are named q0, q1, ... and the alphabet is taken from the printable
+ * ASCII characters starting at '!', so up to 90 symbols are available.
+ * A fixed seed keeps every run of a benchmark on the same automaton.
+ */
+final class RandomDFA {
+    static final long SEED = 361;
+    static final char FIRST_SYMBOL = '!';
+
+    private RandomDFA() {
+
+    }
+
+    /** Returns a complete DFA with random transitions and about a third of its states final
+     * @param states - number of states
+     *        symbols - size of the alphabet
+     *        seed - seed of the random transitions
+     * @return DFA - the new automaton
+     **/
+    static DFA build(int states, int symbols, long seed) {
+        Random random = new Random(seed);
+        DFA dfa = new DFA();
+        for (int a = 0; a < symbols; a++) {
+            dfa.addSigma((char) (FIRST_SYMBOL + a));
+        }
+        for (int s = 0; s < states; s++) {
+            dfa.addState("q" + s);
+        }
+        dfa.setStart("q0");
+        for (int s = 0; s < states; s++) {
+            if (random.nextInt(3) == 0) {
+                dfa.setFinal("q" + s);
+            }
+            for (int a = 0; a < symbols; a++) {
+                dfa.addTransition("q" + s, "q" + random.nextInt(states), (char) (FIRST_SYMBOL + a));
+            }
+        }
+        return dfa;
+    }
+
+    /** Returns random strings over the alphabet of build
+     * @param count - number of strings
+     *        length - length of every string
+     *        symbols - size of the alphabet
+     *        seed - seed of the random characters
+     * @return String[] - the inputs
+     **/
+    static String[] inputs(int count, int length, int symbols, long seed) {
+        Random random = new Random(seed);
+        String[] inputs = new String[count];
+        char[] chars = new char[length];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < length; j++) {
+                chars[j] = (char) (FIRST_SYMBOL + random.nextInt(symbols));
+            }
+            inputs[i] = new String(chars);
+        }
+        return inputs;
+    }
+}
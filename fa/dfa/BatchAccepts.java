@@ -0,0 +1,66 @@
+package fa.dfa;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * BatchAccepts runs one CompiledDFA over many inputs.
+ * Small batches run on the calling thread. Larger batches are split in
+ * halves on the common ForkJoinPool until each piece is small enough to run
+ * directly. Every piece writes only its own range of the result, and the
+ * CompiledDFA is immutable, so the pieces share nothing that changes.
+ * Each piece steps several of its inputs at once through
+ * CompiledDFA.acceptLanes.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+@SuppressWarnings("serial")
+final class BatchAccepts extends RecursiveTask<Integer> {
+    /**
+     * Batches with fewer inputs than this stay on the calling thread
+     */
+    static final int SEQUENTIAL_THRESHOLD = 1024;
+
+    private final CompiledDFA engine;
+    private final CharSequence[] inputs;
+    private final boolean[] results;    //null when only the count is wanted
+    private final int from;
+    private final int to;
+    private final int leafSize;
+
+    private BatchAccepts(CompiledDFA engine, CharSequence[] inputs, boolean[] results, int from, int to, int leafSize) {
+        this.engine = engine;
+        this.inputs = inputs;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+        this.leafSize = leafSize;
+    }
+
+    /** Tests every input and returns the number accepted
+     * @param engine - the automaton to run
+     *        inputs - the strings to test
+     *        results - array receiving one answer per input, or null to only count
+     * @return int - number of accepted inputs
+     **/
+    static int run(CompiledDFA engine, CharSequence[] inputs, boolean[] results) {
+        if (inputs.length < SEQUENTIAL_THRESHOLD) {
+            return engine.acceptLanes(inputs, results, 0, inputs.length);
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int leafSize = Math.max(SEQUENTIAL_THRESHOLD / 4, inputs.length / (pool.getParallelism() * 8));
+        return pool.invoke(new BatchAccepts(engine, inputs, results, 0, inputs.length, leafSize));
+    }
+
+    @Override
+    protected Integer compute() {
+        if (to - from <= leafSize) {
+            return engine.acceptLanes(inputs, results, from, to);
+        }
+        int mid = (from + to) >>> 1;
+        BatchAccepts left = new BatchAccepts(engine, inputs, results, from, mid, leafSize);
+        left.fork();                                    //Left half may be stolen by another worker
+        int right = new BatchAccepts(engine, inputs, results, mid, to, leafSize).compute();
+        return left.join() + right;
+    }
+}
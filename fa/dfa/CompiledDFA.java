@@ -0,0 +1,1014 @@
+package fa.dfa;
+
+import java.util.*;
+
+/**
+ * CompiledDFA is an immutable, array based engine built from a DFA.
+ * States keep the dense ids given to them by the DFA and
+ * symbols are numbered in the order they were added to the alphabet. Symbols
+ * that lead every state to the same place form one class and share a column
+ * of the table. Every state has one row holding its transition on every
+ * column followed by its final flag, so simulating the automaton does no
+ * hashing, boxing or allocation.
+ * Rows are stored in pages of PAGE_STATES rows. A new version of the engine
+ * made by changing one transition or final flag, or by adding a state, copies
+ * only the page holding that row and shares every other page with the
+ * version it came from.
+ * A state with a self-loop on most symbols and at most MAX_EXITS symbols that
+ * leave it gets a bitmap of the Latin-1 characters that leave it. While in
+ * such a state run scans ahead for the first character in the bitmap instead
+ * of following the table one character at a time. The bitmaps are found once
+ * about as many characters have been read as finding them costs, so a new
+ * engine answers short inputs without scanning its table first.
+ * Once it has read about as many characters as the table has entries, an
+ * engine also finds its dead states, from which no final state can be
+ * reached, and its accepting sinks, from which every string over Sigma is
+ * accepted. accepts then stops reading as soon as it enters either kind.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+public final class CompiledDFA {
+    /**
+     * Sentinel used for a missing transition and for a symbol outside of Sigma
+     */
+    public static final int REJECT = -1;
+
+    static final int PAGE_SHIFT = 7;
+    static final int PAGE_STATES = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_STATES - 1;
+
+    /**
+     * Inputs stepped together by acceptLanes
+     */
+    static final int LANES = 8;
+
+    /**
+     * Most symbols of Sigma that may leave a state whose self-loop runs are skipped
+     */
+    static final int MAX_EXITS = 4;
+
+    private static final long[][] NO_LOOPS = new long[0][];   //loops of an engine without self-loop states
+
+    /**
+     * Kinds of state in the status of an engine
+     */
+    static final byte LIVE = 0;     //a final state can still be reached
+    static final byte DEAD = 1;     //no final state can be reached
+    static final byte SINK = 2;     //every string over Sigma is accepted from here
+
+    /**
+     * Longest part of an input accepts reads between two looks at the status
+     */
+    static final int MAX_BLOCK = 1 << 12;
+
+    private static final byte[] NO_STOPS = new byte[0];      //status of an engine with only live, non-sink states
+
+    private final long version;
+    private final int stateCount;
+    private final int symbolCount;
+    private final int columnCount;  //classes of symbols that behave the same
+    private final int width;        //columns plus the final flag
+    private final int[] classSizes; //number of symbols sharing every column
+    private final int[][] pages;
+    private final int start;
+    private final StateNames names;
+    private final char[] symbols;
+    private final SymbolMap symbolMap;
+    private final int[] latin1;
+    private volatile long[][] loops;    //exit bitmaps of self-loop states by page, built once enough input has been read
+    private volatile byte[] status;     //kind of every state, built once enough input has been read
+    private int budget;                 //characters to read before the status is worth building
+    private int loopBudget;             //characters to read before the bitmaps are worth building
+
+    private CompiledDFA(long version, int stateCount, char[] symbols, SymbolMap symbolMap, int[] classSizes,
+                        int[][] pages, int start, StateNames names) {
+        this.version = version;
+        this.stateCount = stateCount;
+        this.symbolCount = symbols.length;
+        this.columnCount = classSizes.length;
+        this.width = classSizes.length + 1;
+        this.classSizes = classSizes;
+        this.pages = pages;
+        this.start = start;
+        this.names = names;
+        this.symbols = symbols;
+        this.symbolMap = symbolMap;
+        this.latin1 = symbolMap.direct();
+        this.budget = (int) Math.min(Integer.MAX_VALUE, (long) stateCount * width);
+        this.loopBudget = (int) Math.min(Integer.MAX_VALUE, (long) stateCount * symbolCount);
+    }
+
+    /** Builds the compiled form of a DFA
+     * Symbols are first grouped into classes by comparing their transitions from every
+     * state, using a hash of each symbol's targets and checking candidates in full, and the
+     * table gets one column per class.
+     * @param dfa - the DFA to be compiled. It is only read.
+     *        version - number of changes made to the DFA so far
+     * @return CompiledDFA - an immutable engine accepting the same language
+     **/
+    static CompiledDFA from(DFA dfa, long version) {
+        char[] symbols = new char[dfa.sigma.size()];
+        int k = 0;
+        for (Character chr : dfa.sigma) {
+            symbols[k++] = chr;
+        }
+
+        int n = dfa.byId.size();
+        long[] hash = new long[k];
+        for (int s = 0; s < n; s++) {
+            DFAState state = dfa.byId.get(s);
+            for (int a = 0; a < k; a++) {
+                hash[a] = (hash[a] + state.getTransitionId(symbols[a]) + 2) * 0x9E3779B97F4A7C15L;
+            }
+        }
+        int[] classOf = new int[k];
+        int[] members = new int[k];                     //a symbol of every class
+        int[] sizes = new int[k];
+        int classes = 0;
+        Map<Long, List<Integer>> byHash = new HashMap<>();
+        for (int a = 0; a < k; a++) {
+            List<Integer> candidates = byHash.computeIfAbsent(hash[a], h -> new ArrayList<>(1));
+            classOf[a] = -1;
+            for (int c : candidates) {
+                if (sameColumn(dfa, symbols[members[c]], symbols[a])) {
+                    classOf[a] = c;
+                    break;
+                }
+            }
+            if (classOf[a] < 0) {
+                classOf[a] = classes;
+                members[classes] = a;
+                candidates.add(classes++);
+            }
+            sizes[classOf[a]]++;
+        }
+        SymbolMap symbolMap = new SymbolMap();
+        for (int a = 0; a < k; a++) {
+            symbolMap.add(symbols[a]);
+            symbolMap.put(symbols[a], classOf[a]);
+        }
+
+        String[] names = new String[n];
+        int width = classes + 1;
+        int[][] pages = new int[(n + PAGE_MASK) >>> PAGE_SHIFT][];
+        for (int p = 0; p < pages.length; p++) {
+            pages[p] = new int[Math.min(PAGE_STATES, n - (p << PAGE_SHIFT)) * width];
+        }
+        for (int s = 0; s < n; s++) {                   //Ids of the DFA are the row numbers
+            DFAState state = dfa.byId.get(s);
+            names[s] = state.getName();
+            int[] page = pages[s >>> PAGE_SHIFT];
+            int row = (s & PAGE_MASK) * width;
+            for (int c = 0; c < classes; c++) {
+                page[row + c] = state.getTransitionId(symbols[members[c]]);
+            }
+            page[row + classes] = dfa.finals.get(s) ? 1 : 0;
+        }
+        return new CompiledDFA(version, n, symbols, symbolMap, Arrays.copyOf(sizes, classes), pages, dfa.start,
+                new StateNames(names));
+    }
+
+    /** Returns if two symbols lead every state of a DFA to the same place
+     * @param dfa - the DFA being compiled
+     *        a - a symbol of Sigma
+     *        b - another symbol of Sigma
+     * @return boolean - true if the symbols can share a column
+     **/
+    private static boolean sameColumn(DFA dfa, char a, char b) {
+        for (DFAState state : dfa.byId) {
+            if (state.getTransitionId(a) != state.getTransitionId(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Creates an engine from tables read elsewhere, such as a binary DFA file
+     * @param stateCount - number of states
+     *        symbols - Sigma in the order symbols were added
+     *        symbolMap - column of every symbol
+     *        columns - number of table columns
+     *        pages - rows of every state, each followed by its final flag
+     *        start - id of the start state or REJECT
+     *        names - labels of the states
+     * @return CompiledDFA - engine over the given tables
+     **/
+    static CompiledDFA of(int stateCount, char[] symbols, SymbolMap symbolMap, int columns, int[][] pages,
+                          int start, StateNames names) {
+        int[] sizes = new int[columns];
+        for (char symbol : symbols) {
+            sizes[symbolMap.indexOf(symbol)]++;
+        }
+        return new CompiledDFA(0, stateCount, symbols, symbolMap, sizes, pages, start, names);
+    }
+
+    /** Returns the column of a character in the transition table
+     * A swapped engine reads a symbol through another symbol's column, so the column of
+     * symbol(i) is not always i.
+     * @param c - the input character
+     * @return int - the column of the symbol or REJECT if c is not in Sigma
+     **/
+    public int symbolIndex(char c) {
+        return c < SymbolMap.DIRECT ? latin1[c] : symbolMap.indexOf(c);
+    }
+
+    /** Returns the state reached from a state on a symbol
+     * @param state - the id of the state to leave
+     *        symbol - the column of the symbol being read
+     * @return int - id of the next state or REJECT
+     **/
+    public int next(int state, int symbol) {
+        return pages[state >>> PAGE_SHIFT][(state & PAGE_MASK) * width + symbol];
+    }
+
+    /** Runs the automaton over part of an input starting from a given state
+     * @param state - id of the state to start from
+     *        in - the input characters
+     *        from - index of the first character to read
+     *        to - index one past the last character to read
+     * @return int - id of the state reached, or REJECT once no transition exists
+     **/
+    public int run(int state, CharSequence in, int from, int to) {
+        final long[][] loops = loops(to - from);
+        if (loops != NO_LOOPS) {
+            return runSkipping(state, in, from, to, loops);
+        }
+        final int[][] pages = this.pages;
+        final int[] latin1 = this.latin1;
+        final int width = this.width;
+        for (int i = from; i < to && state != REJECT; i++) {
+            char chr = in.charAt(i);
+            int c = chr < SymbolMap.DIRECT ? latin1[chr] : symbolMap.indexOf(chr);
+            if (c == REJECT) {
+                return REJECT;                          //Character is not in the language
+            }
+            state = pages[state >>> PAGE_SHIFT][(state & PAGE_MASK) * width + c];
+        }
+        return state;
+    }
+
+    private int runSkipping(int state, CharSequence in, int from, int to, long[][] loops) {
+        final int[][] pages = this.pages;
+        final int[] latin1 = this.latin1;
+        final int width = this.width;
+        for (int i = from; i < to && state != REJECT; i++) {
+            char chr = in.charAt(i);
+            int c = chr < SymbolMap.DIRECT ? latin1[chr] : symbolMap.indexOf(chr);
+            if (c == REJECT) {
+                return REJECT;                          //Character is not in the language
+            }
+            state = pages[state >>> PAGE_SHIFT][(state & PAGE_MASK) * width + c];
+            long[] loop = state == REJECT ? null : loops[state >>> PAGE_SHIFT];
+            if (loop != null) {
+                i = skip(loop, (state & PAGE_MASK) << 2, in, i + 1, to) - 1;   //Stay on the state until an exit
+            }
+        }
+        return state;
+    }
+
+    /** Runs the automaton over part of a character array starting from a given state
+     * @param state - id of the state to start from
+     *        in - the input characters
+     *        from - index of the first character to read
+     *        to - index one past the last character to read
+     * @return int - id of the state reached, or REJECT once no transition exists
+     **/
+    public int run(int state, char[] in, int from, int to) {
+        final long[][] loops = loops(to - from);
+        if (loops != NO_LOOPS) {
+            return runSkipping(state, in, from, to, loops);
+        }
+        final int[][] pages = this.pages;
+        final int[] latin1 = this.latin1;
+        final int width = this.width;
+        for (int i = from; i < to && state != REJECT; i++) {
+            char chr = in[i];
+            int c = chr < SymbolMap.DIRECT ? latin1[chr] : symbolMap.indexOf(chr);
+            if (c == REJECT) {
+                return REJECT;                          //Character is not in the language
+            }
+            state = pages[state >>> PAGE_SHIFT][(state & PAGE_MASK) * width + c];
+        }
+        return state;
+    }
+
+    private int runSkipping(int state, char[] in, int from, int to, long[][] loops) {
+        final int[][] pages = this.pages;
+        final int[] latin1 = this.latin1;
+        final int width = this.width;
+        for (int i = from; i < to && state != REJECT; i++) {
+            char chr = in[i];
+            int c = chr < SymbolMap.DIRECT ? latin1[chr] : symbolMap.indexOf(chr);
+            if (c == REJECT) {
+                return REJECT;                          //Character is not in the language
+            }
+            state = pages[state >>> PAGE_SHIFT][(state & PAGE_MASK) * width + c];
+            long[] loop = state == REJECT ? null : loops[state >>> PAGE_SHIFT];
+            if (loop != null) {
+                i = skip(loop, (state & PAGE_MASK) << 2, in, i + 1, to) - 1;   //Stay on the state until an exit
+            }
+        }
+        return state;
+    }
+
+    /** Tests a range of a batch, stepping LANES inputs through the table together
+     * Each round reads one character of every lane before any lane reads the next, so the
+     * table loads of different inputs are independent and overlap instead of waiting on each
+     * other. Rounds run for as many characters as the shortest live lane has left, then every
+     * lane that has finished or rejected records its answer and takes the next input.
+     * @param inputs - the strings to test
+     *        results - array receiving one answer per input, or null to only count
+     *        from - index of the first input to test
+     *        to - index one past the last input to test
+     * @return int - number of accepted inputs in the range
+     **/
+    int acceptLanes(CharSequence[] inputs, boolean[] results, int from, int to) {
+        final byte[] status = this.status;              //Dead lanes retire early once it is built
+        final boolean stops = status != null && status != NO_STOPS;
+        final int[][] pages = this.pages;
+        final int[] latin1 = this.latin1;
+        final int width = this.width;
+        CharSequence[] lane = new CharSequence[LANES];
+        int[] input = new int[LANES];       //index of the input in each lane, -1 for an idle lane
+        int[] state = new int[LANES];
+        int[] position = new int[LANES];
+        int[] end = new int[LANES];
+        int next = from;
+        int live = 0;
+        int count = 0;
+        for (int l = 0; l < LANES; l++) {
+            input[l] = -1;
+            if (next < to) {
+                lane[l] = inputs[next];
+                input[l] = next++;
+                state[l] = start;
+                end[l] = lane[l].length();
+                live++;
+            }
+        }
+        while (live > 0) {
+            int round = Integer.MAX_VALUE;
+            for (int l = 0; l < LANES; l++) {
+                if (input[l] >= 0) {
+                    round = Math.min(round, state[l] == REJECT ? 0 : end[l] - position[l]);
+                }
+            }
+            for (int i = 0; i < round; i++) {
+                for (int l = 0; l < LANES; l++) {
+                    int s = state[l];
+                    if (input[l] < 0 || s == REJECT) {
+                        continue;
+                    }
+                    char chr = lane[l].charAt(position[l] + i);
+                    int c = chr < SymbolMap.DIRECT ? latin1[chr] : symbolMap.indexOf(chr);
+                    state[l] = c == REJECT ? REJECT : pages[s >>> PAGE_SHIFT][(s & PAGE_MASK) * width + c];
+                }
+            }
+            for (int l = 0; l < LANES; l++) {
+                if (input[l] < 0) {
+                    continue;
+                }
+                position[l] += round;
+                if (stops && state[l] != REJECT && kind(status, state[l]) == DEAD) {
+                    state[l] = REJECT;
+                }
+                if (state[l] != REJECT && position[l] < end[l]) {
+                    continue;                           //Lane still has input
+                }
+                boolean accepted = isFinal(state[l]);
+                if (results != null) {
+                    results[input[l]] = accepted;
+                }
+                if (accepted) {
+                    count++;
+                }
+                if (next < to) {                        //Refill the lane with the next input
+                    lane[l] = inputs[next];
+                    input[l] = next++;
+                    state[l] = start;
+                    position[l] = 0;
+                    end[l] = lane[l].length();
+                } else {
+                    lane[l] = null;
+                    input[l] = -1;
+                    live--;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Returns the index of the first character that leaves a self-loop state
+     * @param loop - exit bitmaps of the page of the state
+     *        row - index of the first bitmap word of the state
+     *        in - the input characters
+     *        from - index of the first character to look at
+     *        to - index one past the last character to look at
+     * @return int - index of the first exit character, or to if there is none
+     **/
+    private static int skip(long[] loop, int row, CharSequence in, int from, int to) {
+        int i = from;
+        while (i < to) {
+            char chr = in.charAt(i);
+            if (chr >= SymbolMap.DIRECT || (loop[row + (chr >>> 6)] & (1L << chr)) != 0) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skip(long[] loop, int row, char[] in, int from, int to) {
+        int i = from;
+        while (i < to) {
+            char chr = in[i];
+            if (chr >= SymbolMap.DIRECT || (loop[row + (chr >>> 6)] & (1L << chr)) != 0) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /** Returns the exit bitmaps of the self-loop states once enough input has been read to pay for them
+     * Entry p is null when no state of page p is a self-loop state. Otherwise every state of
+     * the page has four words marking the characters 0-255 that leave it, all set for a state
+     * that is not a self-loop state.
+     * @param read - number of characters about to be read
+     * @return long[][] - the bitmaps by page, or NO_LOOPS for an engine without self-loop
+     *                    states and while the bitmaps are not built
+     **/
+    private long[][] loops(int read) {
+        long[][] built = loops;
+        if (built == null) {
+            if ((loopBudget -= read) > 0) {             //Racy count, at worst built twice
+                return NO_LOOPS;
+            }
+            built = new long[pages.length][];
+            boolean any = false;
+            for (int s = 0; s < stateCount; s++) {
+                any |= setLoop(built, s);
+            }
+            built = any ? built : NO_LOOPS;
+            loops = built;                              //Racing threads build equal copies
+        }
+        return built;
+    }
+
+    /** Writes the exit bitmap of one state in place
+     * @param loops - the bitmaps by page, changed in place
+     *        state - id of the state
+     * @return boolean - true if the state is a self-loop state
+     **/
+    private boolean setLoop(long[][] loops, int state) {
+        int self = 0;
+        int exits = 0;
+        for (int a = 0; a < symbolCount; a++) {
+            if (next(state, symbolIndex(symbols[a])) == state) {
+                self++;
+            } else {
+                exits++;
+            }
+        }
+        int p = state >>> PAGE_SHIFT;
+        int row = (state & PAGE_MASK) << 2;
+        if (exits > MAX_EXITS || self <= exits) {
+            if (loops[p] != null) {
+                Arrays.fill(loops[p], row, row + 4, -1L);
+            }
+            return false;
+        }
+        if (loops[p] == null) {
+            loops[p] = new long[(pages[p].length / width) << 2];
+            Arrays.fill(loops[p], -1L);
+        }
+        Arrays.fill(loops[p], row, row + 4, -1L);
+        for (int a = 0; a < symbolCount; a++) {
+            char chr = symbols[a];
+            if (chr < SymbolMap.DIRECT && next(state, symbolIndex(chr)) == state) {
+                loops[p][row + (chr >>> 6)] &= ~(1L << chr);
+            }
+        }
+        return true;
+    }
+
+    /** Creates a matcher that reads its input in pieces
+     * @return DFAMatcher - matcher positioned on the start state
+     **/
+    public DFAMatcher newMatcher() {
+        return new DFAMatcher(this);
+    }
+
+    /** Returns this engine with the transitions of two symbols exchanged
+     * The table, final states and names are shared, only the symbol columns are remapped,
+     * so the cost is O(|Sigma|) and repeated swaps compose into one permutation.
+     * @param symb1 - symbol to exchange, must be in Sigma
+     *        symb2 - symbol to exchange, must be in Sigma
+     * @return CompiledDFA - engine reading symb1 as symb2 and symb2 as symb1
+     **/
+    CompiledDFA swap(char symb1, char symb2) {
+        SymbolMap map = symbolMap.copy();
+        int column1 = symbolIndex(symb1);
+        map.put(symb1, symbolIndex(symb2));
+        map.put(symb2, column1);
+        CompiledDFA engine = new CompiledDFA(0, stateCount, symbols, map, classSizes, pages, start, names);
+        engine.status = status;                         //Columns only trade places
+        return engine;
+    }
+
+    /** Returns the next version of this engine with one transition changed
+     * Only the page holding the row of the changed state is copied. When the symbol shares
+     * its column with other symbols and the transition changes, the symbol leaves its class
+     * for a column of its own and every row is copied once with that column added.
+     * @param version - version number of the result
+     *        from - id of the state the transition leaves
+     *        onSymb - the symbol read
+     *        to - id of the state the transition goes to
+     * @return CompiledDFA - engine sharing every unchanged page with this one
+     **/
+    CompiledDFA withTransition(long version, int from, char onSymb, int to) {
+        int column = symbolIndex(onSymb);
+        int[][] copy;
+        SymbolMap map = symbolMap;
+        int[] sizes = classSizes;
+        int rowWidth = width;
+        if (classSizes[column] > 1 && next(from, column) != to) {   //Symbol leaves its class
+            copy = widened(column);
+            map = symbolMap.copy();
+            map.put(onSymb, columnCount);
+            sizes = Arrays.copyOf(classSizes, columnCount + 1);
+            sizes[column]--;
+            sizes[columnCount] = 1;
+            column = columnCount;
+            rowWidth++;
+        } else {
+            copy = pages.clone();
+            copy[from >>> PAGE_SHIFT] = copy[from >>> PAGE_SHIFT].clone();
+        }
+        copy[from >>> PAGE_SHIFT][(from & PAGE_MASK) * rowWidth + column] = to;
+        CompiledDFA engine = new CompiledDFA(version, stateCount, symbols, map, sizes, copy, start, names);
+        long[][] parent = loops;
+        if (parent == NO_LOOPS) {                       //Only the bitmap of from can change
+            long[][] bitmaps = new long[copy.length][];
+            engine.loops = engine.setLoop(bitmaps, from) ? bitmaps : NO_LOOPS;
+        } else if (parent != null) {
+            long[][] bitmaps = parent.clone();
+            int p = from >>> PAGE_SHIFT;
+            bitmaps[p] = bitmaps[p] == null ? null : bitmaps[p].clone();
+            engine.setLoop(bitmaps, from);
+            engine.loops = bitmaps;
+        }
+        return engine;
+    }
+
+    /** Returns the next version of this engine with one more final state
+     * Only the page holding the row of the state is copied.
+     * @param version - version number of the result
+     *        state - id of the state made final
+     * @return CompiledDFA - engine sharing every other page with this one
+     **/
+    CompiledDFA withFinal(long version, int state) {
+        int[][] copy = pages.clone();
+        int[] page = copy[state >>> PAGE_SHIFT].clone();
+        page[(state & PAGE_MASK) * width + columnCount] = 1;
+        copy[state >>> PAGE_SHIFT] = page;
+        CompiledDFA engine = new CompiledDFA(version, stateCount, symbols, symbolMap, classSizes, copy, start, names);
+        engine.loops = loops;                           //Final flags do not change any bitmap, only the status
+        return engine;
+    }
+
+    /** Returns the next version of this engine with another start state
+     * @param version - version number of the result
+     *        state - id of the new start state
+     * @return CompiledDFA - engine sharing every page with this one
+     **/
+    CompiledDFA withStart(long version, int state) {
+        CompiledDFA engine = new CompiledDFA(version, stateCount, symbols, symbolMap, classSizes, pages, state, names);
+        engine.loops = loops;
+        engine.status = status;
+        return engine;
+    }
+
+    /** Returns the next version of this engine with one more state
+     * The new state gets the next id, no transitions and is not final. Only the last page
+     * and the array of pages are copied, so every other row is shared with this engine.
+     * @param version - version number of the result
+     *        name - label of the new state
+     * @return CompiledDFA - engine with a REJECT row for the new state
+     **/
+    CompiledDFA withState(long version, String name) {
+        int state = stateCount;
+        int p = state >>> PAGE_SHIFT;
+        int[][] copy = Arrays.copyOf(pages, p + 1);
+        int[] page = p < pages.length ? Arrays.copyOf(pages[p], pages[p].length + width) : new int[width];
+        Arrays.fill(page, page.length - width, page.length - 1, REJECT);
+        copy[p] = page;
+        CompiledDFA engine = new CompiledDFA(version, stateCount + 1, symbols, symbolMap, classSizes, copy, start,
+                names.with(name));
+        long[][] parent = loops;
+        if (parent == null || parent == NO_LOOPS) {     //The new state has no self-loop
+            engine.loops = parent;
+        } else {
+            long[][] bitmaps = Arrays.copyOf(parent, copy.length);
+            if (bitmaps[p] != null) {
+                bitmaps[p] = Arrays.copyOf(bitmaps[p], bitmaps[p].length + 4);
+                Arrays.fill(bitmaps[p], bitmaps[p].length - 4, bitmaps[p].length, -1L);
+            }
+            engine.loops = bitmaps;
+        }
+        byte[] kinds = status;
+        if (kinds != null && kinds != NO_STOPS) {
+            engine.status = kinds;                      //Nothing leads to the new state, which reads as LIVE
+        }
+        return engine;
+    }
+
+    /** Returns the next version of this engine with one more symbol
+     * No state has a transition on the new symbol yet. If some column already rejects from
+     * every state the symbol joins its class and the table is shared. Otherwise every row
+     * is copied with one more column.
+     * @param version - version number of the result
+     *        symbol - the symbol added to Sigma
+     * @return CompiledDFA - engine rejecting the new symbol from every state
+     **/
+    CompiledDFA withSymbol(long version, char symbol) {
+        int column = REJECT;
+        for (int c = 0; c < columnCount && column == REJECT; c++) {
+            column = c;
+            for (int s = 0; s < stateCount; s++) {
+                if (next(s, c) != REJECT) {
+                    column = REJECT;
+                    break;
+                }
+            }
+        }
+        int[][] table = pages;
+        int[] sizes;
+        if (column == REJECT) {
+            column = columnCount;
+            table = widened(REJECT);
+            sizes = Arrays.copyOf(classSizes, columnCount + 1);
+        } else {
+            sizes = classSizes.clone();
+        }
+        sizes[column]++;
+        char[] sigma = Arrays.copyOf(symbols, symbolCount + 1);
+        sigma[symbolCount] = symbol;
+        SymbolMap map = symbolMap.copy();
+        map.add(symbol);
+        map.put(symbol, column);
+        CompiledDFA engine = new CompiledDFA(version, stateCount, sigma, map, sizes, table, start, names);
+        if (loops == NO_LOOPS) {
+            engine.loops = NO_LOOPS;                    //A new exit never makes a self-loop state
+        }
+        byte[] kinds = status;
+        if (kinds == NO_STOPS || (kinds != null && table == pages)) {
+            engine.status = kinds;                      //No state was complete, so there are no sinks to lose
+        } else if (kinds != null) {
+            byte[] copy = kinds.clone();
+            for (int s = 0; s < copy.length; s++) {
+                if (copy[s] == SINK) {
+                    copy[s] = LIVE;                     //A sink has no transition on the new symbol
+                }
+            }
+            engine.status = copy;
+        }
+        return engine;
+    }
+
+    /** Copies the table with one more column placed before the final flags
+     * @param copied - column whose entries fill the new column, or REJECT for no transitions
+     * @return int[][] - the new pages, sharing nothing with this engine
+     **/
+    private int[][] widened(int copied) {
+        int[][] copy = new int[pages.length][];
+        for (int p = 0; p < pages.length; p++) {
+            int[] page = pages[p];
+            int rows = page.length / width;
+            int[] wide = new int[rows * (width + 1)];
+            for (int r = 0; r < rows; r++) {
+                int from = r * width;
+                int to = r * (width + 1);
+                System.arraycopy(page, from, wide, to, columnCount);
+                wide[to + columnCount] = copied == REJECT ? REJECT : page[from + copied];
+                wide[to + columnCount + 1] = page[from + columnCount];
+            }
+            copy[p] = wide;
+        }
+        return copy;
+    }
+
+    /** Tests every input of a batch
+     * Large batches are split across the common ForkJoinPool.
+     * @param inputs - the strings to be tested
+     * @return BitSet - bit i is set when inputs.get(i) is accepted
+     **/
+    public BitSet acceptsAll(List<? extends CharSequence> inputs) {
+        boolean[] results = acceptsAll(inputs.toArray(new CharSequence[0]));
+        BitSet accepted = new BitSet(results.length);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) { accepted.set(i); }
+        }
+        return accepted;
+    }
+
+    /** Tests every input of a batch
+     * Large batches are split across the common ForkJoinPool.
+     * @param inputs - the strings to be tested
+     * @return boolean[] - entry i is true when inputs[i] is accepted
+     **/
+    public boolean[] acceptsAll(CharSequence[] inputs) {
+        boolean[] results = new boolean[inputs.length];
+        BatchAccepts.run(this, inputs, results);
+        return results;
+    }
+
+    /** Tests every input of a batch, reading each prefix shared by several inputs once
+     * The inputs are sorted and each one resumes from the state at the end of the prefix it
+     * shares with the one before, so the table is read about once per node of the trie of
+     * the inputs instead of once per character.
+     * @param inputs - the strings to be tested, which are not reordered
+     * @return boolean[] - entry i is true when inputs[i] is accepted
+     **/
+    public boolean[] acceptsAllSharingPrefixes(CharSequence[] inputs) {
+        return PrefixAccepts.run(this, inputs, true);
+    }
+
+    /** Tests every input of a batch that is already sorted, reading shared prefixes once
+     * Each input resumes from the end of the prefix it shares with the one before. Inputs out
+     * of order still get the right answers, only fewer prefixes are shared.
+     * @param inputs - the strings to be tested, in sorted order
+     * @return boolean[] - entry i is true when inputs[i] is accepted
+     **/
+    public boolean[] acceptsAllSorted(CharSequence[] inputs) {
+        return PrefixAccepts.run(this, inputs, false);
+    }
+
+    /** Counts the accepted inputs of a batch
+     * @param inputs - the strings to be tested
+     * @return int - number of accepted inputs
+     **/
+    public int countAccepted(List<? extends CharSequence> inputs) {
+        return countAccepted(inputs.toArray(new CharSequence[0]));
+    }
+
+    /** Counts the accepted inputs of a batch
+     * @param inputs - the strings to be tested
+     * @return int - number of accepted inputs
+     **/
+    public int countAccepted(CharSequence[] inputs) {
+        return BatchAccepts.run(this, inputs, null);
+    }
+
+    /** Travels the compiled automaton and returns if the input is part of the language
+     * @param s - the input being tested
+     * @return boolean - true - the input ends on a final state
+     *                   false - a transition was missing or the last state is not final
+     **/
+    public boolean accepts(CharSequence s) {
+        if (start == REJECT) { return false; }
+        int length = s.length();
+        byte[] status = status(length);
+        if (status == null || status == NO_STOPS) {
+            return isFinal(run(start, s, 0, length));
+        }
+        int state = start;
+        int block = 16;
+        for (int i = 0; ; block = Math.min(block << 1, MAX_BLOCK)) {   //Read in growing blocks
+            byte kind = kind(status, state);
+            if (kind == DEAD) {
+                return false;
+            }
+            if (kind == SINK) {
+                return inSigma(s, i, length);
+            }
+            if (i == length) {
+                return isFinal(state);
+            }
+            int end = (int) Math.min(length, (long) i + block);
+            state = run(state, s, i, end);
+            if (state == REJECT) {
+                return false;
+            }
+            i = end;
+        }
+    }
+
+    /** Returns if every character of part of an input is in Sigma
+     * @param in - the input characters
+     *        from - index of the first character to check
+     *        to - index one past the last character to check
+     * @return boolean - true if no character is outside of Sigma
+     **/
+    private boolean inSigma(CharSequence in, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (symbolIndex(in.charAt(i)) == REJECT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the kind of every state once enough input has been read to pay for finding them
+     * @param read - number of characters about to be read
+     * @return byte[] - LIVE, DEAD or SINK for every state, NO_STOPS if every state is live
+     *                  and none is a sink, or null while the status is not built
+     **/
+    private byte[] status(int read) {
+        byte[] built = status;
+        if (built == null && (budget -= read) <= 0) {  //Racy count, at worst built twice
+            built = buildStatus();
+            status = built;
+        }
+        return built;
+    }
+
+    /** Returns the kind of a state
+     * States added after the status was built have no entry. Nothing leads to them from the
+     * states that do, and they are read as LIVE, which only means accepts does not stop early.
+     * @param status - the built status, not NO_STOPS
+     *        state - id of the state
+     * @return byte - LIVE, DEAD or SINK
+     **/
+    private static byte kind(byte[] status, int state) {
+        return state < status.length ? status[state] : LIVE;
+    }
+
+    /** Returns if a final state can be reached from a state, building the status if needed
+     * @param state - id of the state
+     * @return boolean - false for a dead state
+     **/
+    boolean canAccept(int state) {
+        byte[] built = status;
+        if (built == null || (built != NO_STOPS && built.length < stateCount)) {
+            built = buildStatus();
+            status = built;
+        }
+        return built == NO_STOPS || built[state] != DEAD;
+    }
+
+    /** Finds the dead states and the accepting sinks
+     * Dead states are those not reached by a backward search from the final states. Sinks
+     * are what is left of the complete final states after repeatedly removing every state
+     * with a transition to a state that was removed.
+     * @return byte[] - LIVE, DEAD or SINK for every state, or NO_STOPS if there are neither
+     **/
+    private byte[] buildStatus() {
+        int n = stateCount;
+        int[] firstSource = new int[n + 1];             //Reverse transitions, grouped by target
+        boolean[] sink = new boolean[n];
+        for (int s = 0; s < n; s++) {
+            sink[s] = isFinal(s);
+            for (int c = 0; c < columnCount; c++) {
+                int t = next(s, c);
+                if (t == REJECT) {
+                    sink[s] = false;
+                } else {
+                    firstSource[t + 1]++;
+                }
+            }
+        }
+        for (int s = 0; s < n; s++) {
+            firstSource[s + 1] += firstSource[s];
+        }
+        int[] fill = Arrays.copyOf(firstSource, n);
+        int[] sources = new int[firstSource[n]];
+        for (int s = 0; s < n; s++) {
+            for (int c = 0; c < columnCount; c++) {
+                int t = next(s, c);
+                if (t != REJECT) {
+                    sources[fill[t]++] = s;
+                }
+            }
+        }
+
+        boolean[] live = new boolean[n];
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int s = 0; s < n; s++) {
+            if (isFinal(s)) {
+                live[s] = true;
+                queue[tail++] = s;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int t = queue[head];
+            for (int i = firstSource[t]; i < firstSource[t + 1]; i++) {
+                if (!live[sources[i]]) {
+                    live[sources[i]] = true;
+                    queue[tail++] = sources[i];
+                }
+            }
+        }
+
+        tail = 0;
+        for (int s = 0; s < n; s++) {
+            if (!sink[s]) {
+                queue[tail++] = s;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int t = queue[head];
+            for (int i = firstSource[t]; i < firstSource[t + 1]; i++) {
+                if (sink[sources[i]]) {
+                    sink[sources[i]] = false;          //Can leave the sinks
+                    queue[tail++] = sources[i];
+                }
+            }
+        }
+
+        byte[] kinds = new byte[n];
+        boolean any = false;
+        for (int s = 0; s < n; s++) {
+            if (!live[s]) {
+                kinds[s] = DEAD;
+                any = true;
+            } else if (sink[s]) {
+                kinds[s] = SINK;
+                any = true;
+            }
+        }
+        return any ? kinds : NO_STOPS;
+    }
+
+    /** Tests one long input by reading chunks of it on several threads
+     * Every chunk but the first follows all states until they merge, so this pays off for
+     * inputs of millions of characters on an automaton with few states, such as a minimized one.
+     * Shorter inputs run sequentially.
+     * @param s - the input being tested. It must not change while it is read.
+     * @return boolean - true - the input ends on a final state
+     *                   false - a transition was missing or the last state is not final
+     **/
+    public boolean acceptsParallel(CharSequence s) {
+        return isFinal(ParallelAccepts.run(this, s));
+    }
+
+    /** Returns if the state with the given id is final
+     * @param state - id of the state
+     * @return boolean - true if the state is final
+     **/
+    public boolean isFinal(int state) {
+        return state != REJECT && pages[state >>> PAGE_SHIFT][(state & PAGE_MASK) * width + columnCount] != 0;
+    }
+
+    /** Returns the id of the start state
+     * @return int - id of the start state or REJECT when none has been set
+     **/
+    public int startState() {
+        return start;
+    }
+
+    /** Returns the id of a state
+     * @param name - the state label
+     * @return int - id of the state or REJECT if no state has that name
+     **/
+    public int stateId(String name) {
+        return names.id(name);
+    }
+
+    /** Returns the number of changes made to the DFA before this version was taken
+     * @return long - version number, 0 for an engine not taken from a DFA
+     **/
+    public long version() {
+        return version;
+    }
+
+    /** Returns the number of states
+     * @return int - |Q|
+     **/
+    public int stateCount() {
+        return stateCount;
+    }
+
+    /** Returns the number of symbols
+     * @return int - |Sigma|
+     **/
+    public int symbolCount() {
+        return symbolCount;
+    }
+
+    /** Returns the number of columns of the transition table
+     * Symbols that lead every state to the same place share a column, so this can be less
+     * than symbolCount.
+     * @return int - number of classes of symbols
+     **/
+    public int columnCount() {
+        return columnCount;
+    }
+
+    /** Returns a symbol of Sigma by position, in the order symbols were added
+     * @param symbol - position of the symbol in Sigma
+     * @return char - the symbol
+     **/
+    public char symbol(int symbol) {
+        return symbols[symbol];
+    }
+
+    /** Returns the name of a state
+     * @param state - id of the state
+     * @return String - the state label
+     **/
+    public String stateName(int state) {
+        return names.name(state);
+    }
+}
@@ -2,20 +2,52 @@ package fa.dfa;
 
 import fa.State;
 
+import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
  * DFA is an implementation that provides all necessary operations to construct
  * a Determinate Finite Automata.
+ * Methods that change or read the states are synchronized. Readers of the
+ * compiled form, such as accepts, instead take the current immutable
+ * CompiledDFA version from a volatile field, so they never lock and always
+ * see one consistent version while writers build the next one.
+ * Every state gets a dense int id when it is added. Transitions, final
+ * states and the start state are kept by id, and names are only looked up
+ * for the methods of DFAInterface that take one.
  * @author Luis Acosta
  * @author Spencer Ford
  */
 public class DFA implements DFAInterface {
+    /**
+     * Written by toString in place of a transition that was never added
+     */
+    public static final String NO_TRANSITION = "-";
+
+    /**
+     * Written by toString in front of a state name that would otherwise read as
+     * NO_TRANSITION, as null or as the } closing a set, or that starts with it
+     */
+    public static final char ESCAPE = '\\';
+
     protected LinkedHashSet<Character> sigma = new LinkedHashSet<>();
-    protected HashMap<String, DFAState> states = new LinkedHashMap<>();
-    protected TreeSet<String> finalStates = new TreeSet<>();
-    protected String startState;
+    protected HashMap<String, DFAState> states = new LinkedHashMap<>();    //Name side table
+    ArrayList<DFAState> byId = new ArrayList<>();   //State of every id, in the order states were added
+    BitSet finals = new BitSet();                   //Ids of the final states
+    int start = CompiledDFA.REJECT;                 //Id of the start state
+    SymbolMap symbols = new SymbolMap();   //Index of every symbol in sigma, kept in step with addSigma
+    private final Set<Character> offSigma = new HashSet<>();   //Symbols outside sigma that some state has a transition on
+    private volatile CompiledDFA compiled;  //Current version, null when it must be built from the maps
+    private CompiledDFA pending;    //Swapped view this DFA was made from, copied into the maps on first use
+    private long version;           //Number of changes made so far
+    private final AtomicReference<ResultCache> cache = new AtomicReference<>();   //Answers of recent accepts calls, null unless enabled
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private volatile Profiler profiler;     //Counts of profiled accepts calls, null unless enabled
 
     public DFA() {
 
@@ -23,17 +55,93 @@ public class DFA implements DFAInterface {
 
     public DFA(Collection<Character> sigma, HashMap<String, DFAState> states, SortedSet<String> finalStates, String startState) {
         this.sigma = new LinkedHashSet<>(sigma);
+        for (Character chr : this.sigma) {
+            symbols.add(chr);
+        }
+        Map<Integer, Integer> ids = new HashMap<>();    //Id of every given state in its own DFA to its id here
+        DFA source = null;                              //DFA every given state with an id belongs to
+        int next = 0;
         for (Map.Entry<String, DFAState> entryState : states.entrySet()) {
-            DFAState deepCopyState = new DFAState(entryState.getKey());
-            for (Map.Entry<Character, State> entryTransition : entryState.getValue().transitions.entrySet()) {
-                State transitionState = entryTransition.getValue();
-                deepCopyState.transitions.put(entryTransition.getKey(), transitionState);
+            DFAState state = entryState.getValue();
+            if (state.id != CompiledDFA.REJECT) {
+                if (source != null && state.owner != source) {
+                    throw new IllegalArgumentException("State " + entryState.getKey() + " belongs to another DFA");
+                }
+                source = state.owner;
+                if (ids.put(state.id, next) != null) {
+                    throw new IllegalArgumentException("State " + entryState.getKey() + " has the id of another state: " + state.id);
+                }
             }
-
+            next++;
+        }
+        for (Map.Entry<String, DFAState> entryState : states.entrySet()) {
+            DFAState state = entryState.getValue();
+            DFAState deepCopyState = new DFAState(entryState.getKey(), byId.size(), this);   //Fresh ids in map order
+            for (int slot = 0; slot < state.slots(); slot++) {
+                int target = state.slotTarget(slot);
+                if (target != CompiledDFA.REJECT) {
+                    Integer to = ids.get(target);
+                    if (to == null) {
+                        throw new IllegalArgumentException("Transition of " + entryState.getKey() + " on "
+                                + state.slotSymbol(slot) + " goes to a state that was not given");
+                    }
+                    deepCopyState.setTransition(state.slotSymbol(slot), to);
+                    if (!this.sigma.contains(state.slotSymbol(slot))) {
+                        offSigma.add(state.slotSymbol(slot));
+                    }
+                }
+            }
+            byId.add(deepCopyState);
             this.states.put(entryState.getKey(), deepCopyState);
         }
-        this.finalStates = new TreeSet<>(finalStates);
-        this.startState = startState;
+        for (String name : finalStates) {
+            finals.set(this.states.get(name).id);
+        }
+        this.start = startState == null ? CompiledDFA.REJECT : this.states.get(startState).id;
+    }
+
+    /** Creates a DFA backed by a compiled engine instead of its own states
+     * The states, transitions and final states are only copied out of the view the first
+     * time they are read or changed. Until then the DFA runs directly on the view.
+     * @param sigma - the alphabet in the order symbols were added
+     *        symbols - index of every symbol in sigma
+     *        view - engine holding the states and transitions of this DFA
+     **/
+    private DFA(LinkedHashSet<Character> sigma, SymbolMap symbols, CompiledDFA view) {
+        this.sigma = new LinkedHashSet<>(sigma);
+        this.symbols = symbols.copy();
+        this.compiled = view;
+        this.pending = view;
+    }
+
+    /** Copies the states of the view this DFA was made from into its own maps
+     * Every method that reads or changes the maps calls this first. It does nothing once
+     * the maps have been filled.
+     **/
+    private void materialize() {
+        CompiledDFA view = pending;
+        if (view == null) {
+            return;
+        }
+        pending = null;
+        int n = view.stateCount();
+        states = new LinkedHashMap<>(n * 4 / 3 + 1);
+        byId.ensureCapacity(n);
+        for (int s = 0; s < n; s++) {                   //Ids of the view are kept
+            DFAState state = new DFAState(view.stateName(s), s, this);
+            for (Character chr : sigma) {
+                int to = view.next(s, view.symbolIndex(chr));
+                if (to != CompiledDFA.REJECT) {
+                    state.setTransition(chr, to);
+                }
+            }
+            states.put(state.getName(), state);
+            byId.add(state);
+            if (view.isFinal(s)) {
+                finals.set(s);
+            }
+        }
+        start = view.startState();
     }
 
     /** Adds States to a DFA Instance
@@ -42,11 +150,17 @@ public class DFA implements DFAInterface {
      *                 - false - state was not added. Probably do to the state of 'name' already exists.
      **/
     @Override
-    public boolean addState(String name) {
+    public synchronized boolean addState(String name) {
+        materialize();
         if (states.containsKey(name)) { //Check the state is not already in the state set
             return false;
         }
-        states.put(name, new DFAState(name)); //Add new DFAState object to state set
+        DFAState state = new DFAState(name, byId.size(), this);  //Next free id
+        states.put(name, state);        //Add new DFAState object to state set
+        byId.add(state);
+        CompiledDFA current = compiled;
+        version++;
+        compiled = current == null ? null : current.withState(version, name);  //Copy only the last page
         return true;
     }
 
@@ -57,9 +171,14 @@ public class DFA implements DFAInterface {
      *                 - false - specified state not added to final state set
      **/
     @Override
-    public boolean setFinal(String name) {
-        if (states.containsKey(name)) { //Check the state is already in the state set
-            finalStates.add(name);      //Adds the valid state to the final state set
+    public synchronized boolean setFinal(String name) {
+        materialize();
+        DFAState state = states.get(name);
+        if (state != null) {            //Check the state is already in the state set
+            finals.set(state.id);       //Adds the valid state to the final state set
+            CompiledDFA current = compiled;
+            version++;
+            compiled = current == null ? null : current.withFinal(version, state.id);
             return true;
         }
         return false;
@@ -71,20 +190,27 @@ public class DFA implements DFAInterface {
      *                 - false - specified state not made the start state
      **/
     @Override
-    public boolean setStart(String name) {
-        if (states.containsKey(name)) { //Check the state is already in the state set
-            startState = name;          //Makes valid state the start state
+    public synchronized boolean setStart(String name) {
+        materialize();
+        DFAState state = states.get(name);
+        if (state != null) {            //Check the state is already in the state set
+            start = state.id;           //Makes valid state the start state
+            CompiledDFA current = compiled;
+            version++;
+            compiled = current == null ? null : current.withStart(version, state.id);
             return true;
         }
         return false;
     }
 
     /** Travels the DFA object and return if the passed string is part of the language.
-     * This method will break the string up in to an array of Characters to be compared
-     * to the Characters that make up the names of the states of this DFA object. For every
-     * character of the array this method will see if the state has a valid transition available.
-     * The method will consume the string as long as valid transitions exist until the end when it
-     * will make sure the state that it ends on is a final state.
+     * The DFA is compiled once into a CompiledDFA and every call after that runs on its
+     * transition table. For every character of the string the engine looks up the column
+     * of the character and follows the transition of the current state. The method will
+     * consume the string as long as valid transitions exist until the end when it will
+     * make sure the state that it ends on is a final state.
+     * When the result cache is enabled a string tested since the last change is answered
+     * from the cache. While profiling every call runs the DFA and is counted instead.
      * @param s - the string that is being tested if it is accepted by the DFA object
      * @return boolean - true - specified string successfully traveled the DFA and landed on a final state
      *                 - false - specified string failed to find valid transitions to consume the input string
@@ -92,23 +218,297 @@ public class DFA implements DFAInterface {
      **/
     @Override
     public boolean accepts(String s) {
-        DFAState currentState = states.get(startState); //Create a new DFAState object to hold current state
-        for (char c : s.toCharArray()) {                //Break up input string into Character array
-            if (!sigma.contains(c)) { return false; }   //Check that the current Character is in the language
-            String nextState = currentState.transitions.get(c).getName();   //Grab the valid transition
-            if (nextState == null) { return false; }    //Checks if there is a valid transition
+        CompiledDFA engine = compile();
+        Profiler profiling = profiler;
+        if (profiling != null) {
+            return profiling.accepts(engine, s);
+        }
+        ResultCache results = cache.get();
+        if (results == null) {
+            return engine.accepts(s);
+        }
+        if (results.engine() != engine) {   //The DFA changed, so every cached answer is stale
+            ResultCache renewed = results.renew(engine);
+            //Only replaces the cache that was read, never one enabled or disabled meanwhile
+            cache.compareAndSet(results, renewed);
+            results = renewed;
+        }
+        return results.accepts(s);
+    }
+
+    /** Makes accepts remember its answers for the most recently tested strings
+     * Meant for traffic where a few strings make up most calls. Every change to the DFA
+     * empties the cache, so a cached answer is always the answer of the current DFA.
+     * Enabling the cache again replaces it with an empty one of the new size.
+     * @param maxEntries - about how many strings are remembered, at least 1
+     **/
+    public void enableResultCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+        }
+        cache.set(new ResultCache(null, maxEntries, cacheHits, cacheMisses));
+    }
+
+    /** Stops caching the answers of accepts and drops every cached answer
+     **/
+    public void disableResultCache() {
+        cache.set(null);
+    }
+
+    /** Returns the number of accepts calls answered from the result cache
+     * @return long - hits since this DFA was created
+     **/
+    public long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    /** Returns the number of accepts calls that ran the DFA while the result cache was enabled
+     * @return long - misses since this DFA was created
+     **/
+    public long cacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /** Makes accepts count how often it visits every state and follows every transition
+     * Each thread counts on its own, so profiled threads do not slow each other down.
+     * Counting starts from zero again each time profiling is enabled.
+     **/
+    public void enableProfiling() {
+        profiler = new Profiler();
+    }
+
+    /** Stops counting in accepts and drops the counts
+     * Once disabled accepts costs the same as if profiling had never been enabled.
+     **/
+    public void disableProfiling() {
+        profiler = null;
+    }
+
+    /** Returns a snapshot of the counts collected since profiling was enabled
+     * Calls still running on other threads may be left out.
+     * @return DFAProfile - the counts, or null if profiling is not enabled
+     **/
+    public DFAProfile profile() {
+        Profiler profiling = profiler;
+        return profiling == null ? null : profiling.snapshot(compile());
+    }
+
+    /** Tests one very long string against this DFA using several threads
+     * The string is cut into chunks that are read at the same time on the common ForkJoinPool.
+     * Each chunk finds the state it ends in from every possible starting state, and the chunks
+     * are then joined in order. States that meet are followed once, so with a small DFA each
+     * chunk costs about as much as reading it sequentially.
+     * @param s - the string to be tested. It must not change while it is read.
+     * @return boolean - true if the DFA accepts the string
+     **/
+    public boolean acceptsParallel(CharSequence s) {
+        return compile().acceptsParallel(s);
+    }
+
+    /** Tests every string of a batch against this DFA
+     * The batch runs on the compiled form of the DFA, which is immutable and safe to share
+     * between threads. Large batches are split across the common ForkJoinPool and small
+     * ones stay on the calling thread.
+     * Each thread steps several inputs through the table at once, which suits batches of
+     * many short keys.
+     * @param inputs - the strings to be tested
+     * @return BitSet - bit i is set when inputs.get(i) is accepted
+     **/
+    public BitSet acceptsAll(List<? extends CharSequence> inputs) {
+        return compile().acceptsAll(inputs);
+    }
+
+    /** Tests every string of a batch against this DFA
+     * @param inputs - the strings to be tested
+     * @return boolean[] - entry i is true when inputs[i] is accepted
+     **/
+    public boolean[] acceptsAll(CharSequence[] inputs) {
+        return compile().acceptsAll(inputs);
+    }
+
+    /** Tests every string of a batch, reading each prefix shared by several strings once
+     * Suits batches such as URL or file paths. The strings are sorted and walked like a trie,
+     * so a long common prefix costs one pass instead of one pass per string.
+     * @param inputs - the strings to be tested
+     * @return boolean[] - entry i is true when inputs[i] is accepted
+     **/
+    public boolean[] acceptsAllSharingPrefixes(CharSequence[] inputs) {
+        return compile().acceptsAllSharingPrefixes(inputs);
+    }
+
+    /** Tests every string of a batch that is already sorted, reading shared prefixes once
+     * @param inputs - the strings to be tested, in sorted order
+     * @return boolean[] - entry i is true when inputs[i] is accepted
+     **/
+    public boolean[] acceptsAllSorted(CharSequence[] inputs) {
+        return compile().acceptsAllSorted(inputs);
+    }
+
+    /** Counts the strings of a batch accepted by this DFA
+     * @param inputs - the strings to be tested
+     * @return int - number of accepted strings
+     **/
+    public int countAccepted(List<? extends CharSequence> inputs) {
+        return compile().countAccepted(inputs);
+    }
+
+    /** Counts the strings of a batch accepted by this DFA
+     * @param inputs - the strings to be tested
+     * @return int - number of accepted strings
+     **/
+    public int countAccepted(CharSequence[] inputs) {
+        return compile().countAccepted(inputs);
+    }
+
+    /** Creates a matcher that reads input in pieces instead of one String
+     * The matcher runs on the current compiled form of this DFA and keeps only its current
+     * state, so streams of any length are tested in constant memory.
+     * @return DFAMatcher - matcher positioned on the start state
+     **/
+    public DFAMatcher newMatcher() {
+        return compile().newMatcher();
+    }
+
+    /** Tests every line of a file without reading it into Strings
+     * The file is memory mapped and each byte is read as the Latin-1 character of the same value.
+     * @param file - the file to scan
+     * @return DFAFileScanner.Result - number of lines read and accepted
+     * @throws IOException if the file cannot be read
+     **/
+    public DFAFileScanner.Result scanFile(Path file) throws IOException {
+        return DFAFileScanner.scan(compile(), file, (byte) '\n', null);
+    }
+
+    /** Tests every record of a file without reading it into Strings
+     * @param file - the file to scan
+     *        delimiter - byte separating records
+     *        consumer - receives the outcome of each record in file order
+     * @return DFAFileScanner.Result - number of records read and accepted
+     * @throws IOException if the file cannot be read
+     **/
+    public DFAFileScanner.Result scanFile(Path file, byte delimiter, DFAFileScanner.RecordConsumer consumer)
+            throws IOException {
+        return DFAFileScanner.scan(compile(), file, delimiter, consumer);
+    }
+
+    /** Returns the minimal DFA accepting the same language as this DFA
+     * Uses Hopcroft's partition refinement. States that cannot be reached from the start
+     * state are left out, and each remaining state is named after the earliest added state
+     * it replaces, so states and symbols keep the order used by toString.
+     * @return DFA - a new DFA with the fewest states for this language
+     **/
+    public DFA minimize() {
+        return Minimizer.minimize(compile());
+    }
+
+    /** Returns a copy of this DFA without its useless states
+     * A state is kept when it can be reached from the start state and a final state can be
+     * reached from it. Both searches are iterative, so DFAs of millions of states are fine.
+     * Kept states keep their names and order, and the start state is always kept.
+     * @return DFA - a new DFA with the same language and only the kept states
+     **/
+    public DFA trim() {
+        return Trimmer.trim(compile());
+    }
+
+    /** Returns boolean value if another DFA accepts the same language as this DFA
+     * @param other - the DFA to compare with
+     * @return boolean - true - both DFAs accept exactly the same strings
+     *                   false - some string is accepted by only one of them
+     **/
+    public boolean equivalentTo(DFAInterface other) {
+        return distinguishingString(other) == null;
+    }
+
+    /** Returns a shortest string accepted by exactly one of this DFA and another DFA
+     * Uses the Hopcroft-Karp union-find algorithm over pairs of states, visited breadth first.
+     * Symbols in only one of the two alphabets are rejected by the DFA that lacks them. A DFA
+     * of another implementation is compared through the 5-tuple written by its toString.
+     * @param other - the DFA to compare with
+     * @return String - a shortest distinguishing string, or null when the languages are equal
+     **/
+    public String distinguishingString(DFAInterface other) {
+        return Equivalence.counterexample(compile(), compiled(other));
+    }
+
+    /** Writes this DFA to a file in the binary format of DFAFile
+     * @param file - the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     **/
+    public void save(Path file) throws IOException {
+        DFAFile.write(compile(), file);
+    }
+
+    /** Reads a DFA written by save
+     * The transition table is loaded straight into a compiled engine, so the DFA can accept
+     * strings at once. Its states are only created if they are read or changed.
+     * @param file - the file to read
+     * @return DFA - the stored automaton
+     * @throws IOException if the file cannot be read or is not a DFA file
+     **/
+    public static DFA load(Path file) throws IOException {
+        CompiledDFA view = DFAFile.read(file);
+        LinkedHashSet<Character> sigma = new LinkedHashSet<>();
+        SymbolMap symbols = new SymbolMap();
+        for (int a = 0; a < view.symbolCount(); a++) {
+            sigma.add(view.symbol(a));
+            symbols.add(view.symbol(a));
+        }
+        return new DFA(sigma, symbols, view);
+    }
 
-            currentState = states.get(nextState);       //Set currentState to state specified by valid transition
+    /** Returns the current compiled, immutable version of this DFA
+     * Reading the current version never locks. Every change publishes a new version built by
+     * the writer. Changing a transition, final state or the start state, or adding a state,
+     * shares every unchanged page with the last version. Adding a symbol that no existing
+     * column can take copies the table once with one more column.
+     * @return CompiledDFA - engine accepting the same language as this DFA
+     **/
+    public CompiledDFA compile() {
+        CompiledDFA engine = compiled;
+        if (engine == null) {
+            synchronized (this) {
+                engine = compiled;
+                if (engine == null) {
+                    engine = CompiledDFA.from(this, version);
+                    compiled = engine;
+                }
             }
-        return finalStates.contains(currentState.getName()); //Checks currentState is in the final state set
+        }
+        return engine;
+    }
+
+    /** Returns the compiled form of any DFAInterface
+     * A DFA from another implementation is read back from its toString 5-tuple.
+     * @param dfa - the DFA to be compiled
+     * @return CompiledDFA - engine accepting the same language
+     **/
+    static CompiledDFA compiled(DFAInterface dfa) {
+        if (dfa instanceof DFA) {
+            return ((DFA) dfa).compile();
+        }
+        try {
+            return DFAReader.read(new StringReader(dfa.toString())).compile();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read DFA " + dfa.getClass().getName(), e);
+        }
     }
 
     /** Add a Character to the language
      * @param symbol - Character to be added to the language
      **/
     @Override
-    public void addSigma(char symbol) {
-        sigma.add(symbol);  //LinkedHashSets only adds unique symbols
+    public synchronized void addSigma(char symbol) {
+        materialize();
+        if (sigma.add(symbol)) {    //LinkedHashSets only adds unique symbols
+            symbols.add(symbol);
+            boolean used = offSigma.remove(symbol);
+            CompiledDFA current = compiled;
+            version++;
+            if (current != null) {      //withSymbol only fits a symbol no state has a transition on yet
+                compiled = used ? CompiledDFA.from(this, version) : current.withSymbol(version, symbol);
+            }
+        }
     }
 
     /** Returns Set of Characters containing the language
@@ -123,7 +523,8 @@ public class DFA implements DFAInterface {
      * @param name - the name of the state to be returned
      * @return State object
      **/
-    public State getState(String name) {
+    public synchronized State getState(String name) {
+        materialize();
         return states.get(name);
     }
 
@@ -133,8 +534,10 @@ public class DFA implements DFAInterface {
      *                  false - state is not a final state
      **/
     @Override
-    public boolean isFinal(String name) {
-        return finalStates.contains(name);
+    public synchronized boolean isFinal(String name) {
+        materialize();
+        DFAState state = states.get(name);
+        return state != null && finals.get(state.id);
     }
 
     /** Returns boolean value if specified string is the start state
@@ -143,37 +546,92 @@ public class DFA implements DFAInterface {
      *                  false - state is not the start state
      **/
     @Override
-    public boolean isStart(String name) {
-        return startState.equals(name);
+    public synchronized boolean isStart(String name) {
+        materialize();
+        DFAState state = states.get(name);
+        return state != null && state.id == start;
     }
 
     /** Returns string of 5-tuple DFA definition
      * @return string
      **/
     @Override
-    public String toString() {
-        String returnString = "Q = { " + String.join(" ", states.keySet()) + " }\n";
-        returnString += "Sigma = { ";
-        for (Character chr : getSigma()) {
-            returnString += chr + " ";
-        }
-        returnString += "}\n";
-        returnString += "delta =\n\t";
-        for (Character chr : getSigma()) {
-            returnString += chr + " ";
-        }
-        returnString += "\n";
-        for (DFAState state : states.values()) {
-            returnString += state.toString() + "\t";
-            for( char chr : getSigma() ) {
-                returnString += state.transitions.get(chr).toString() + " ";
+    public synchronized String toString() {
+        StringBuilder returnString = new StringBuilder();
+        try {
+            writeTo((Appendable) returnString);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  //StringBuilder never throws
+        }
+        return returnString.toString();
+    }
+
+    /** Writes the 5-tuple DFA definition returned by toString
+     * The definition is written piece by piece in one pass over the states, so it never has
+     * to fit in memory as one String. A transition that was never added is written as -.
+     * A state named -, null or } is written with ESCAPE in front, as is a name starting
+     * with ESCAPE, so DFAReader reads every name back as it was.
+     * @param out - where the definition is written
+     * @throws IOException if out fails
+     **/
+    public synchronized void writeTo(Appendable out) throws IOException {
+        materialize();
+        out.append("Q = { ");
+        for (DFAState state : byId) {
+            out.append(escape(state.getName())).append(' ');
+        }
+        out.append("}\n");
+        out.append("Sigma = { ");
+        for (Character chr : sigma) {
+            out.append(chr).append(' ');
+        }
+        out.append("}\n");
+        out.append("delta =\n\t");
+        for (Character chr : sigma) {
+            out.append(chr).append(' ');
+        }
+        out.append('\n');
+        for (DFAState state : byId) {
+            out.append(escape(state.getName())).append('\t');
+            for (Character chr : sigma) {
+                int to = state.getTransitionId(chr);
+                out.append(to == CompiledDFA.REJECT ? NO_TRANSITION : escape(byId.get(to).getName())).append(' ');
             }
-            returnString += "\n";
+            out.append('\n');
+        }
+
+        out.append("q0 = ").append(start == CompiledDFA.REJECT ? "null" : escape(byId.get(start).getName())).append('\n');
+        out.append("F = { ");
+        String[] finalNames = new String[finals.cardinality()];
+        int f = 0;
+        for (int id = finals.nextSetBit(0); id >= 0; id = finals.nextSetBit(id + 1)) {
+            finalNames[f++] = byId.get(id).getName();
+        }
+        Arrays.sort(finalNames, Collections.reverseOrder());     //Names in descending order
+        for (String name : finalNames) {
+            out.append(escape(name)).append(' ');
         }
+        out.append("}\n");
+    }
 
-        returnString += "q0 = " + startState + "\n";
-        returnString += "F = { " + String.join(" ", finalStates.descendingSet()) + " }\n";
-        return returnString;
+    /** Returns a state name as writeTo writes it
+     * @param name - the state label
+     * @return String - the name, with ESCAPE in front if it could be mistaken for another token
+     **/
+    static String escape(String name) {
+        boolean clash = name.equals(NO_TRANSITION) || name.equals("null") || name.equals("}")
+                || (!name.isEmpty() && name.charAt(0) == ESCAPE);
+        return clash ? ESCAPE + name : name;
+    }
+
+    /** Writes the 5-tuple DFA definition returned by toString through a buffer
+     * @param out - where the definition is written. It is flushed but not closed.
+     * @throws IOException if out fails
+     **/
+    public void writeTo(Writer out) throws IOException {
+        BufferedWriter buffered = out instanceof BufferedWriter ? (BufferedWriter) out : new BufferedWriter(out, 1 << 16);
+        writeTo((Appendable) buffered);
+        buffered.flush();
     }
 
     /** Returns boolean value if specified transition is valid
@@ -186,32 +644,54 @@ public class DFA implements DFAInterface {
      *                  false - transition failed to be added
      **/
     @Override
-    public boolean addTransition(String fromState, String toState, char onSymb) {   //Checks params are valid
-        if ( !states.containsKey(fromState) || !states.containsKey(toState) || !sigma.contains(onSymb)) {
+    public synchronized boolean addTransition(String fromState, String toState, char onSymb) {
+        materialize();   //Checks params are valid
+        DFAState from = states.get(fromState);
+        DFAState to = states.get(toState);
+        if (from == null || to == null || symbols.indexOf(onSymb) == CompiledDFA.REJECT) {
             return false;
         }
-        states.get(fromState).transitions.put(onSymb, states.get(toState)); //Add valid transition to fromState
-                                                                            // transition set
+        from.setTransition(onSymb, to.id);  //Add valid transition to fromState transition set
+        CompiledDFA current = compiled;     //Copy only the page of fromState
+        version++;
+        compiled = current == null ? null : current.withTransition(version, from.id, onSymb, to.id);
         return true;
     }
 
-    /** Returns this DFA object with specified transition swaps
-     *
+    /** Adds a transition made through DFAState.transition, keeping one that already exists
+     * @param from - state of this DFA the transition leaves
+     *        onSymb - the symbol read
+     *        to - state the transition goes to
+     **/
+    synchronized void transition(DFAState from, char onSymb, DFAState to) {
+        materialize();
+        if (from.getTransitionId(onSymb) != CompiledDFA.REJECT) {
+            return;
+        }
+        from.setTransition(onSymb, to.id);
+        CompiledDFA current = compiled;
+        version++;
+        if (symbols.indexOf(onSymb) == CompiledDFA.REJECT) {
+            offSigma.add(onSymb);       //Not read until the symbol is added
+        } else if (current != null) {
+            compiled = current.withTransition(version, from.id, onSymb, to.id);
+        }
+    }
+
+    /** Returns a copy of this DFA with the transitions on two symbols exchanged
+     * The copy is a view over the compiled table of this DFA that reads symb1 through the
+     * column of symb2 and the other way around, so creating it costs O(|Sigma|) and swaps
+     * of swaps compose into one permutation. The view only copies out its own states when
+     * they are first read or changed, and changes to either DFA never affect the other.
      * @param   symb1 - character swap
      *          sybm2 - character swap
-     * @return DFA -
+     * @return DFA - copy of this DFA with swapped transitions, or null if either symbol is not in the language
      **/
     @Override
-    public DFA swap(char symb1, char symb2) {
-        if (sigma.contains(symb1) && sigma.contains(symb2)) {               //Checks both symbols exist in the language
-            DFA DFACopy = new DFA(sigma, states, finalStates, startState);  //Creates new DFA object copy of this DFA
-            for (DFAState stateCopy : DFACopy.states.values()) {            //Iterates over every state in DFA
-                String toState = stateCopy.transitions.remove(symb1).toString();    //Remove old transition on symb1 and save
-                String fromState = stateCopy.transitions.remove(symb2).toString();  //Remove old transition on symb2 and save
-                DFACopy.addTransition(stateCopy.toString(), toState, symb2);        //Add new transition to toState on symb2
-                DFACopy.addTransition(stateCopy.toString(), fromState, symb1);      //Add new transition to fromState on symb1
-            }
-            return DFACopy;
+    public synchronized DFA swap(char symb1, char symb2) {
+        if (symbols.indexOf(symb1) != CompiledDFA.REJECT                   //Checks both symbols exist in the language
+                && symbols.indexOf(symb2) != CompiledDFA.REJECT) {
+            return new DFA(sigma, symbols, compile().swap(symb1, symb2));
         }
         return null;
     }
@@ -0,0 +1,237 @@
+package fa.dfa;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DFAFile reads and writes the compiled form of a DFA in a binary format.
+ * Loading maps the file and copies the transition table straight into the
+ * pages of a CompiledDFA, without parsing text or creating an object per state.
+ * Every value is a big-endian int, so sections never straddle a mapped window:
+ * <pre>
+ *     magic 'DFA1', format version
+ *     |Q|, |Sigma|, number of table columns, id of the start state or -1
+ *     symbols of Sigma in the order they were added
+ *     table column of every symbol
+ *     final states, one bit per state, 32 states per int
+ *     transition table, one id per column for every state, -1 for a missing transition
+ *     number of name characters, |Q| + 1 name offsets, name characters two per int
+ * </pre>
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+public final class DFAFile {
+    static final int MAGIC = 0x44464131;            //"DFA1"
+    static final int FORMAT_VERSION = 2;
+    static final int WINDOW = 1 << 30;              //Largest part of the file mapped at one time
+
+    private DFAFile() {
+
+    }
+
+    /** Writes a compiled DFA to a file, replacing the file if it exists
+     * @param dfa - the automaton to write
+     *        file - the file to write
+     * @throws IOException if the file cannot be written
+     **/
+    public static void write(CompiledDFA dfa, Path file) throws IOException {
+        int n = dfa.stateCount();
+        int k = dfa.symbolCount();
+        int columns = dfa.columnCount();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(n);
+            out.writeInt(k);
+            out.writeInt(columns);
+            out.writeInt(dfa.startState());
+            int[] column = new int[k];
+            for (int a = 0; a < k; a++) {
+                out.writeInt(dfa.symbol(a));
+            }
+            for (int a = 0; a < k; a++) {
+                column[a] = dfa.symbolIndex(dfa.symbol(a));
+                out.writeInt(column[a]);
+            }
+            for (int word = 0; word < (n + 31) >>> 5; word++) {
+                int bits = 0;
+                for (int s = word << 5; s < Math.min(n, (word + 1) << 5); s++) {
+                    if (dfa.isFinal(s)) { bits |= 1 << (s & 31); }
+                }
+                out.writeInt(bits);
+            }
+            for (int s = 0; s < n; s++) {               //Rows are written by column, not by symbol
+                for (int c = 0; c < columns; c++) {
+                    out.writeInt(dfa.next(s, c));
+                }
+            }
+            int chars = 0;
+            for (int s = 0; s < n; s++) {
+                chars += dfa.stateName(s).length();
+            }
+            out.writeInt(chars);
+            out.writeInt(0);
+            int offset = 0;
+            for (int s = 0; s < n; s++) {
+                offset += dfa.stateName(s).length();
+                out.writeInt(offset);
+            }
+            for (int s = 0; s < n; s++) {
+                out.writeChars(dfa.stateName(s));
+            }
+            if ((chars & 1) != 0) {
+                out.writeChar(0);                       //Pad to a whole int
+            }
+        }
+    }
+
+    /** Reads a compiled DFA written by write
+     * Every count, id and offset is checked before it is used, so a damaged file fails here
+     * instead of when the automaton runs.
+     * @param file - the file to read
+     * @return CompiledDFA - the automaton stored in the file
+     * @throws IOException if the file cannot be read or is not a valid DFA file of a known version
+     **/
+    public static CompiledDFA read(Path file) throws IOException {
+        try (MappedInput in = new MappedInput(file)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a DFA file");
+            }
+            int format = in.readInt();
+            if (format != FORMAT_VERSION) {
+                throw new IOException(file + " has unsupported format version " + format);
+            }
+            int n = in.readInt();
+            int k = in.readInt();
+            int columns = in.readInt();
+            int start = in.readInt();
+            check(file, n >= 0 && k >= 0 && columns >= 0 && columns <= k, "bad counts");
+            check(file, start >= CompiledDFA.REJECT && start < n, "start state out of range");
+            long needed = 6L + 2L * k + ((n + 31L) >>> 5) + (long) n * columns + n + 2L;
+            check(file, needed <= in.size / 4, "file is shorter than its counts");   //Before allocating anything
+            char[] symbols = new char[k];
+            SymbolMap symbolMap = new SymbolMap();
+            for (int a = 0; a < k; a++) {
+                int symbol = in.readInt();
+                check(file, symbol == (char) symbol && symbolMap.add((char) symbol), "bad symbol");
+                symbols[a] = (char) symbol;
+            }
+            boolean[] used = new boolean[columns];
+            for (int a = 0; a < k; a++) {
+                int column = in.readInt();
+                check(file, column >= 0 && column < columns, "symbol column out of range");
+                symbolMap.put(symbols[a], column);
+                used[column] = true;
+            }
+            for (boolean column : used) {
+                check(file, column, "column without a symbol");
+            }
+            int[] finals = new int[(n + 31) >>> 5];
+            in.readInts(finals, 0, finals.length);
+
+            int width = columns + 1;
+            int[][] pages = new int[(n + CompiledDFA.PAGE_MASK) >>> CompiledDFA.PAGE_SHIFT][];
+            for (int p = 0; p < pages.length; p++) {
+                int rows = Math.min(CompiledDFA.PAGE_STATES, n - (p << CompiledDFA.PAGE_SHIFT));
+                int[] page = new int[rows * width];
+                for (int r = 0; r < rows; r++) {        //Copy each row, then set its final flag
+                    int s = (p << CompiledDFA.PAGE_SHIFT) + r;
+                    in.readInts(page, r * width, columns);
+                    for (int c = r * width; c < r * width + columns; c++) {
+                        check(file, page[c] >= CompiledDFA.REJECT && page[c] < n, "transition out of range");
+                    }
+                    page[r * width + columns] = (finals[s >>> 5] >>> (s & 31)) & 1;
+                }
+                pages[p] = page;
+            }
+
+            int chars = in.readInt();
+            int[] offsets = new int[n + 1];
+            in.readInts(offsets, 0, n + 1);
+            check(file, chars >= 0 && offsets[0] == 0 && offsets[n] == chars, "bad name offsets");
+            for (int s = 0; s < n; s++) {
+                check(file, offsets[s] <= offsets[s + 1], "bad name offsets");
+            }
+            check(file, needed + (chars + 1L) / 2 <= in.size / 4, "file is shorter than its names");
+            char[] names = new char[chars];
+            in.readChars(names);
+            return CompiledDFA.of(n, symbols, symbolMap, columns, pages, start, new StateNames(names, offsets));
+        }
+    }
+
+    /** Throws if a value read from a file fails its check
+     * @param file - the file being read
+     *        valid - result of the check
+     *        problem - what is wrong when the check fails
+     * @throws IOException if valid is false
+     **/
+    private static void check(Path file, boolean valid, String problem) throws IOException {
+        if (!valid) {
+            throw new IOException(file + " is not a valid DFA file: " + problem);
+        }
+    }
+
+    /**
+     * Reads ints from a file through memory mapped windows of at most WINDOW bytes
+     */
+    private static final class MappedInput implements Closeable {
+        private final FileChannel channel;
+        final long size;            //length of the file in bytes
+        private long position;      //file offset of the start of the current window
+        private ByteBuffer window = ByteBuffer.allocate(0);
+        private IntBuffer ints = window.asIntBuffer();
+
+        MappedInput(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+        }
+
+        private void advance() throws IOException {
+            position += window.capacity();
+            if (position >= size) {
+                throw new EOFException("DFA file ends early");
+            }
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+            ints = window.asIntBuffer();
+        }
+
+        int readInt() throws IOException {
+            if (!ints.hasRemaining()) {
+                advance();
+            }
+            return ints.get();
+        }
+
+        void readInts(int[] dst, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!ints.hasRemaining()) {
+                    advance();
+                }
+                int count = Math.min(len, ints.remaining());
+                ints.get(dst, off, count);
+                off += count;
+                len -= count;
+            }
+        }
+
+        void readChars(char[] dst) throws IOException {
+            for (int i = 0; i < dst.length; i += 2) {
+                int pair = readInt();
+                dst[i] = (char) (pair >>> 16);
+                if (i + 1 < dst.length) {
+                    dst[i + 1] = (char) pair;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DFAFileScanner runs a CompiledDFA over every record of a file.
+ * The file is read through FileChannel.map a window at a time, and every byte
+ * is treated as the Latin-1 character with the same value, so it goes straight
+ * through the symbol array of the DFA without being decoded into a String.
+ * Records are separated by a delimiter byte, a newline unless told otherwise,
+ * and the delimiter itself is never fed to the DFA.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+public final class DFAFileScanner {
+    /**
+     * Largest part of the file mapped at one time
+     */
+    static final int WINDOW = 1 << 30;
+
+    /**
+     * Receives the outcome of every record in file order
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /** Called once for each record
+         * @param record - number of the record, starting at 0
+         *        accepted - true if the DFA accepts the record
+         **/
+        void accept(long record, boolean accepted);
+    }
+
+    /**
+     * Totals of one scan
+     */
+    public static final class Result {
+        private final long records;
+        private final long accepted;
+
+        Result(long records, long accepted) {
+            this.records = records;
+            this.accepted = accepted;
+        }
+
+        /** Returns the number of records read
+         * @return long - record count
+         **/
+        public long records() {
+            return records;
+        }
+
+        /** Returns the number of records accepted
+         * @return long - accepted record count
+         **/
+        public long accepted() {
+            return accepted;
+        }
+
+        @Override
+        public String toString() {
+            return accepted + " of " + records + " records accepted";
+        }
+    }
+
+    private DFAFileScanner() {
+
+    }
+
+    /** Runs a DFA over every record of a file
+     * A last record without a trailing delimiter is still reported. An empty file has no records.
+     * @param engine - the automaton to run
+     *        file - the file to scan
+     *        delimiter - byte separating records
+     *        consumer - receives every record outcome, may be null when only totals are wanted
+     * @return Result - number of records read and accepted
+     * @throws IOException if the file cannot be opened or mapped
+     **/
+    public static Result scan(CompiledDFA engine, Path file, byte delimiter, RecordConsumer consumer) throws IOException {
+        final int start = engine.startState();
+        long records = 0;
+        long accepted = 0;
+        boolean open = false;                           //True while a record has bytes not yet reported
+        int state = start;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW) {
+                int length = (int) Math.min(WINDOW, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                for (int i = 0; i < length; i++) {
+                    byte b = window.get(i);
+                    if (b == delimiter) {               //End of record, report and restart
+                        boolean ok = engine.isFinal(state);
+                        if (consumer != null) { consumer.accept(records, ok); }
+                        if (ok) { accepted++; }
+                        records++;
+                        state = start;
+                        open = false;
+                        continue;
+                    }
+                    open = true;
+                    if (state != CompiledDFA.REJECT) {
+                        int c = engine.symbolIndex((char) (b & 0xFF));
+                        state = c == CompiledDFA.REJECT ? CompiledDFA.REJECT : engine.next(state, c);
+                    }
+                }
+            }
+        }
+        if (open) {                                     //Last record had no delimiter after it
+            boolean ok = engine.isFinal(state);
+            if (consumer != null) { consumer.accept(records, ok); }
+            if (ok) { accepted++; }
+            records++;
+        }
+        return new Result(records, accepted);
+    }
+}
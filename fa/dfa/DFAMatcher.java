@@ -0,0 +1,93 @@
+package fa.dfa;
+
+import java.nio.CharBuffer;
+
+/**
+ * DFAMatcher runs a DFA over input that arrives in pieces.
+ * It only remembers the current state, so a stream of any length can be
+ * tested in constant memory without ever building one String. A matcher is
+ * bound to the CompiledDFA it was created from and is not affected by later
+ * changes to the DFA. A matcher is not safe for use by several threads at once.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+public final class DFAMatcher {
+    private final CompiledDFA engine;
+    private int state;
+
+    DFAMatcher(CompiledDFA engine) {
+        this.engine = engine;
+        this.state = engine.startState();
+    }
+
+    /** Consumes part of a character array
+     * @param in - the characters
+     *        off - index of the first character to read
+     *        len - number of characters to read
+     * @return boolean - true - the input read so far may still be accepted
+     *                   false - the input has been rejected
+     **/
+    public boolean feed(char[] in, int off, int len) {
+        if (off < 0 || len < 0 || off + len > in.length) {
+            throw new IndexOutOfBoundsException("off " + off + ", len " + len + ", length " + in.length);
+        }
+        if (state != CompiledDFA.REJECT) {
+            state = engine.run(state, in, off, off + len);
+        }
+        return state != CompiledDFA.REJECT;
+    }
+
+    /** Consumes every remaining character of a buffer and advances its position
+     * @param in - the buffer to read
+     * @return boolean - true - the input read so far may still be accepted
+     *                   false - the input has been rejected
+     **/
+    public boolean feed(CharBuffer in) {
+        int len = in.remaining();
+        boolean live;
+        if (in.hasArray()) {
+            live = feed(in.array(), in.arrayOffset() + in.position(), len);
+        } else {
+            live = feed(in, 0, len);                    //CharBuffer indexes relative to its position
+        }
+        in.position(in.position() + len);
+        return live;
+    }
+
+    /** Consumes part of a character sequence
+     * @param in - the characters
+     *        off - index of the first character to read
+     *        len - number of characters to read
+     * @return boolean - true - the input read so far may still be accepted
+     *                   false - the input has been rejected
+     **/
+    public boolean feed(CharSequence in, int off, int len) {
+        if (off < 0 || len < 0 || off + len > in.length()) {
+            throw new IndexOutOfBoundsException("off " + off + ", len " + len + ", length " + in.length());
+        }
+        if (state != CompiledDFA.REJECT) {
+            state = engine.run(state, in, off, off + len);
+        }
+        return state != CompiledDFA.REJECT;
+    }
+
+    /** Returns if the input read so far is in the language
+     * @return boolean - true if the current state is final
+     **/
+    public boolean isAccepting() {
+        return engine.isFinal(state);
+    }
+
+    /** Returns to the start state so a new input can be read
+     **/
+    public void reset() {
+        state = engine.startState();
+    }
+
+    /** Returns the name of the current state
+     * @return String - the state label, or null once the input has been rejected
+     **/
+    public String currentState() {
+        return state == CompiledDFA.REJECT ? null : engine.stateName(state);
+    }
+}
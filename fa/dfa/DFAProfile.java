@@ -0,0 +1,105 @@
+package fa.dfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DFAProfile is a snapshot of the counts a DFA collected while profiling.
+ * It holds how often accepts visited every state and how often it followed
+ * the transition of every state on every symbol. Only states and transitions
+ * that were used are kept. Later calls to accepts do not change a snapshot.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+public final class DFAProfile {
+    private final CompiledDFA engine;           //version the snapshot was taken on, for names and symbols
+    private final Profiler.Counts visits;
+    private final Profiler.Counts edges;
+
+    DFAProfile(CompiledDFA engine, Profiler.Counts visits, Profiler.Counts edges) {
+        this.engine = engine;
+        this.visits = visits;
+        this.edges = edges;
+    }
+
+    /** Returns how often accepts entered a state, the start state counting once per call
+     * @param name - label of the state
+     * @return long - the visits, 0 for a state that does not exist
+     **/
+    public long visits(String name) {
+        int state = engine.stateId(name);
+        return state == CompiledDFA.REJECT ? 0 : visits.get(state);
+    }
+
+    /** Returns how often accepts followed the transition of a state on a symbol
+     * @param name - label of the state the transition leaves
+     *        onSymb - the symbol read
+     * @return long - the traversals, 0 for a transition that does not exist
+     **/
+    public long traversals(String name, char onSymb) {
+        int state = engine.stateId(name);
+        return state == CompiledDFA.REJECT ? 0 : edges.get(Profiler.edge(state, onSymb));
+    }
+
+    /** Returns the total of the visits of every state
+     * @return long - the sum
+     **/
+    public long totalVisits() {
+        long total = 0;
+        for (int i = 0; i < visits.slots(); i++) {
+            total += visits.count(i);
+        }
+        return total;
+    }
+
+    /** Returns the most visited states, most visited first
+     * States that were never visited are left out. Ties keep the order states were added in.
+     * @param limit - the most names to return
+     * @return List<String> - the state labels
+     **/
+    public List<String> hottestStates(int limit) {
+        Integer[] order = visited();
+        Arrays.sort(order, (a, b) -> Long.compare(visits.get(b), visits.get(a)));
+        List<String> hottest = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, order.length); i++) {
+            hottest.add(engine.stateName(order[i]));
+        }
+        return hottest;
+    }
+
+    /** Returns the ids of every visited state in ascending order
+     * @return Integer[] - the ids
+     **/
+    private Integer[] visited() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < visits.slots(); i++) {
+            if (visits.key(i) >= 0) {
+                ids.add((int) visits.key(i));
+            }
+        }
+        Integer[] order = ids.toArray(new Integer[0]);
+        Arrays.sort(order);
+        return order;
+    }
+
+    /** Lists every visited state with its visits and the transitions it followed
+     * A transition is written as its symbol and its count, in the order symbols were added.
+     * @return String - one line per visited state
+     **/
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int state : visited()) {
+            sb.append(engine.stateName(state)).append(' ').append(visits.get(state));
+            for (int a = 0; a < engine.symbolCount(); a++) {
+                long count = edges.get(Profiler.edge(state, engine.symbol(a)));
+                if (count > 0) {
+                    sb.append(' ').append(engine.symbol(a)).append('=').append(count);
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
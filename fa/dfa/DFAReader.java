@@ -0,0 +1,163 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * DFAReader builds a DFA from the textual 5-tuple written by toString,
+ * as described in DFAInterface.toString.
+ * The text is read once, a buffer at a time, and split on whitespace, so it
+ * is never held in memory as a whole. A - in the table leaves the transition
+ * out and q0 = null leaves out the start state. A name written with
+ * DFA.ESCAPE in front is read without it, so a state may be named - or null.
+ * The state set is sized from Q before any state is added.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+public final class DFAReader {
+    private final Reader in;
+    private final char[] buffer = new char[1 << 13];
+    private int position;
+    private int limit;
+    private int line = 1;
+    private final StringBuilder token = new StringBuilder();
+
+    private DFAReader(Reader in) {
+        this.in = in;
+    }
+
+    /** Reads one DFA in the format of toString
+     * @param in - the text to read. It is read to the end of the F set and not closed.
+     * @return DFA - the automaton described by the text
+     * @throws IOException if the text cannot be read or is not a DFA description
+     **/
+    public static DFA read(Reader in) throws IOException {
+        return new DFAReader(in).readDFA();
+    }
+
+    private DFA readDFA() throws IOException {
+        DFA dfa = new DFA();
+
+        expect("Q");
+        expect("=");
+        expect("{");
+        ArrayList<String> names = new ArrayList<>();
+        for (String name = next(); !name.equals("}"); name = next()) {
+            names.add(unescape(name));
+        }
+        dfa.states = new LinkedHashMap<>(names.size() * 4 / 3 + 1);   //Sized once for every state
+        dfa.byId.ensureCapacity(names.size());
+        for (String name : names) {
+            if (!dfa.addState(name)) {
+                throw error("state " + name + " listed twice");
+            }
+        }
+        names = null;
+
+        expect("Sigma");
+        expect("=");
+        expect("{");
+        for (String symbol = next(); !symbol.equals("}"); symbol = next()) {
+            dfa.addSigma(symbol(symbol));
+        }
+
+        expect("delta");
+        expect("=");
+        int k = dfa.sigma.size();
+        char[] columns = new char[k];                   //Symbols in the order of the table header
+        for (int c = 0; c < k; c++) {
+            columns[c] = symbol(next());
+            if (!dfa.sigma.contains(columns[c])) {
+                throw error("symbol " + columns[c] + " is not in Sigma");
+            }
+        }
+        int n = dfa.states.size();
+        for (int row = 0; row < n; row++) {
+            String from = unescape(next());
+            if (dfa.states.get(from) == null) {
+                throw error("unknown state " + from);
+            }
+            for (int c = 0; c < k; c++) {
+                String to = next();
+                if (!to.equals(DFA.NO_TRANSITION) && !dfa.addTransition(from, unescape(to), columns[c])) {
+                    throw error("unknown state " + to);
+                }
+            }
+        }
+
+        expect("q0");
+        expect("=");
+        String start = next();
+        if (!start.equals("null") && !dfa.setStart(unescape(start))) {   //toString writes null when there is no start state
+            throw error("unknown start state " + start);
+        }
+
+        expect("F");
+        expect("=");
+        expect("{");
+        for (String name = next(); !name.equals("}"); name = next()) {
+            if (!dfa.setFinal(unescape(name))) {
+                throw error("unknown final state " + name);
+            }
+        }
+        return dfa;
+    }
+
+    private char symbol(String symbol) throws IOException {
+        if (symbol.length() != 1) {
+            throw error("symbol " + symbol + " is not one character");
+        }
+        return symbol.charAt(0);
+    }
+
+    /** Returns a state name as it was before writeTo escaped it
+     * @param name - the name as read
+     * @return String - the name without a leading DFA.ESCAPE
+     **/
+    private static String unescape(String name) {
+        return name.length() > 1 && name.charAt(0) == DFA.ESCAPE ? name.substring(1) : name;
+    }
+
+    private void expect(String expected) throws IOException {
+        String found = next();
+        if (!found.equals(expected)) {
+            throw error("expected " + expected + " but found " + found);
+        }
+    }
+
+    /** Returns the next whitespace separated token
+     * @return String - the token
+     * @throws IOException if the text ends first
+     **/
+    private String next() throws IOException {
+        token.setLength(0);
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (token.length() > 0) {
+                        return token.toString();
+                    }
+                    throw error("unexpected end of DFA");
+                }
+            }
+            char c = buffer[position++];
+            if (Character.isWhitespace(c)) {
+                if (c == '\n') { line++; }
+                if (token.length() > 0) {
+                    return token.toString();
+                }
+            } else {
+                token.append(c);
+            }
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException("Malformed DFA at line " + line + ": " + message);
+    }
+}
@@ -0,0 +1,218 @@
+package fa.dfa;
+
+import java.nio.IntBuffer;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * DFASet tests an input against many DFAs in one pass over the input.
+ * It runs the product automaton of the patterns, whose states are tuples
+ * holding the current state of every pattern. Each product state is tagged
+ * with the ids of the patterns that accept in it. Product states and their
+ * transitions are only built the first time an input reaches them, so the
+ * product never grows beyond what the inputs actually visit.
+ * The number of product states is capped. Once the cap is reached an input
+ * that needs a new product state finishes by running each pattern on its
+ * own from the tuple it reached, which gives the same result more slowly.
+ * The patterns are compiled when the set is created and later changes to them
+ * are not seen. A DFASet is safe for use by several threads at once.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+public final class DFASet {
+    /**
+     * Product states built before the set falls back to running patterns one by one
+     */
+    public static final int DEFAULT_MAX_STATES = 1 << 16;
+
+    private final CompiledDFA[] patterns;
+    private final int[][] columns;      //columns[p][u] is the column in pattern p of union symbol u
+    private final SymbolMap symbolMap;  //union of every alphabet
+    private final int[] latin1;
+    private final int symbolCount;
+    private final int maxStates;
+    private final HashMap<IntBuffer, Node> nodes = new HashMap<>();  //product states by tuple
+    private final Node start;
+
+    /**
+     * A product state. Its fields are final so a Node read through a racy
+     * transition is always seen fully built. A null transition has not been
+     * built yet.
+     */
+    private static final class Node {
+        final int[] tuple;          //state of every pattern, CompiledDFA.REJECT once a pattern rejects
+        final BitSet accepts;       //ids of the patterns in a final state
+        final boolean dead;         //every pattern has rejected
+        final Node[] next;
+
+        Node(int[] tuple, BitSet accepts, boolean dead, int symbolCount) {
+            this.tuple = tuple;
+            this.accepts = accepts;
+            this.dead = dead;
+            this.next = new Node[symbolCount];
+        }
+    }
+
+    /** Creates a set over the given patterns with the default cap on product states
+     * @param patterns - the DFAs to match, pattern i has id i
+     **/
+    public DFASet(List<? extends DFAInterface> patterns) {
+        this(patterns, DEFAULT_MAX_STATES);
+    }
+
+    /** Creates a set over the given patterns
+     * @param patterns - the DFAs to match, pattern i has id i
+     *        maxStates - most product states kept in memory, at least 1
+     **/
+    public DFASet(List<? extends DFAInterface> patterns, int maxStates) {
+        if (maxStates < 1) {
+            throw new IllegalArgumentException("maxStates must be at least 1: " + maxStates);
+        }
+        this.maxStates = maxStates;
+        this.patterns = new CompiledDFA[patterns.size()];
+        this.symbolMap = new SymbolMap();
+        for (int p = 0; p < this.patterns.length; p++) {
+            this.patterns[p] = DFA.compiled(patterns.get(p));
+            for (int a = 0; a < this.patterns[p].symbolCount(); a++) {
+                symbolMap.add(this.patterns[p].symbol(a));
+            }
+        }
+        this.symbolCount = symbolMap.size();
+        this.latin1 = symbolMap.direct();
+        char[] union = new char[symbolCount];
+        for (CompiledDFA pattern : this.patterns) {
+            for (int a = 0; a < pattern.symbolCount(); a++) {
+                union[symbolMap.indexOf(pattern.symbol(a))] = pattern.symbol(a);
+            }
+        }
+        this.columns = new int[this.patterns.length][symbolCount];
+        for (int p = 0; p < this.patterns.length; p++) {
+            for (int u = 0; u < symbolCount; u++) {
+                columns[p][u] = this.patterns[p].symbolIndex(union[u]);
+            }
+        }
+
+        int[] tuple = new int[this.patterns.length];
+        for (int p = 0; p < tuple.length; p++) {
+            tuple[p] = this.patterns[p].startState();
+        }
+        synchronized (this) {
+            start = intern(tuple);
+        }
+    }
+
+    /** Returns the patterns that accept an input
+     * @param input - the string to be tested
+     * @return BitSet - bit i is set when pattern i accepts the input
+     **/
+    public BitSet matches(CharSequence input) {
+        final int[] latin1 = this.latin1;
+        Node node = start;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            if (node.dead) {
+                return new BitSet();                    //Every pattern has rejected
+            }
+            char chr = input.charAt(i);
+            int u = chr < SymbolMap.DIRECT ? latin1[chr] : symbolMap.indexOf(chr);
+            if (u == CompiledDFA.REJECT) {
+                return new BitSet();                    //Character is in no pattern's language
+            }
+            Node to = node.next[u];
+            if (to == null) {
+                to = expand(node, u);
+                if (to == null) {
+                    return runEach(node.tuple, input, i);
+                }
+            }
+            node = to;
+        }
+        return (BitSet) node.accepts.clone();
+    }
+
+    /** Returns if any pattern accepts an input
+     * @param input - the string to be tested
+     * @return boolean - true if at least one pattern accepts the input
+     **/
+    public boolean matchesAny(CharSequence input) {
+        return !matches(input).isEmpty();
+    }
+
+    /** Returns the number of patterns
+     * @return int - number of DFAs in the set
+     **/
+    public int size() {
+        return patterns.length;
+    }
+
+    /** Returns the number of product states built so far
+     * @return int - at most the cap given when the set was created
+     **/
+    public synchronized int expandedStates() {
+        return nodes.size();
+    }
+
+    /** Builds the transition of a product state on a union symbol
+     * @param node - the product state to leave
+     *        u - the union symbol read
+     * @return Node - the product state reached, or null if it is new and the cap has been reached
+     **/
+    private synchronized Node expand(Node node, int u) {
+        Node to = node.next[u];
+        if (to != null) {
+            return to;                                  //Built by another thread
+        }
+        int[] tuple = new int[patterns.length];
+        for (int p = 0; p < tuple.length; p++) {
+            int state = node.tuple[p];
+            int column = columns[p][u];
+            tuple[p] = state == CompiledDFA.REJECT || column == CompiledDFA.REJECT
+                    ? CompiledDFA.REJECT : patterns[p].next(state, column);
+        }
+        to = intern(tuple);
+        if (to != null) {
+            node.next[u] = to;
+        }
+        return to;
+    }
+
+    /** Returns the product state of a tuple, building it if there is room
+     * @param tuple - state of every pattern
+     * @return Node - the product state, or null if it is new and the cap has been reached
+     **/
+    private Node intern(int[] tuple) {
+        IntBuffer key = IntBuffer.wrap(tuple);          //Compared and hashed by content
+        Node node = nodes.get(key);
+        if (node != null || nodes.size() >= maxStates) {
+            return node;
+        }
+        BitSet accepts = new BitSet(patterns.length);
+        boolean dead = true;
+        for (int p = 0; p < tuple.length; p++) {
+            if (tuple[p] != CompiledDFA.REJECT) {
+                dead = false;
+                if (patterns[p].isFinal(tuple[p])) { accepts.set(p); }
+            }
+        }
+        node = new Node(tuple, accepts, dead, symbolCount);
+        nodes.put(key, node);
+        return node;
+    }
+
+    /** Finishes an input by running every live pattern on its own
+     * @param tuple - state of every pattern before input.charAt(from)
+     *        input - the string being tested
+     *        from - index of the first character not yet read
+     * @return BitSet - bit i is set when pattern i accepts the input
+     **/
+    private BitSet runEach(int[] tuple, CharSequence input, int from) {
+        BitSet accepted = new BitSet(patterns.length);
+        for (int p = 0; p < tuple.length; p++) {
+            if (tuple[p] != CompiledDFA.REJECT
+                    && patterns[p].isFinal(patterns[p].run(tuple[p], input, from, input.length()))) {
+                accepted.set(p);
+            }
+        }
+        return accepted;
+    }
+}
@@ -1,17 +1,47 @@
 package fa.dfa;
 
 import fa.State;
-import java.util.HashMap;
+
+import java.util.Arrays;
 
 /**
  * Provides the State infrastructure of a Determinate Finite Automata.
+ * Every state added to a DFA gets a dense int id, and transitions refer to
+ * their target state by that id.
  */
 public class DFAState extends State {
 
     /**
-     * A HashMap for storing State's transitions
+     * Smallest number of transitions kept in a direct array
+     */
+    static final int DENSE_MIN = 8;
+
+    /**
+     * Id of the state within its DFA, CompiledDFA.REJECT if it belongs to none
      */
-    protected HashMap<Character, State> transitions = new HashMap<>();
+    final int id;
+
+    /**
+     * DFA the state belongs to, null if it belongs to none
+     */
+    final DFA owner;
+
+    /**
+     * Transitions of a sparse state: symbols in ascending order, with the
+     * target id of keys[i] in targets[i]. Unused while the state is dense.
+     */
+    private char[] keys = new char[2];
+    private int[] targets = new int[2];
+
+    /**
+     * Transitions of a dense state: the target id of symbol base + i in
+     * dense[i], CompiledDFA.REJECT for no transition. Used once the symbols
+     * fill at least half of the range they span, null otherwise.
+     */
+    private int[] dense;
+    private char base;
+
+    private int size;
 
     /**
      * Constuctor that initializes the State's name to the specified name
@@ -19,18 +49,176 @@ public class DFAState extends State {
      * @param name initial name for the State
      */
     public DFAState(String name) {
+        this(name, CompiledDFA.REJECT, null);
+    }
+
+    /**
+     * Constructor for a state of a DFA
+     *
+     * @param name initial name for the State
+     * @param id dense id of the state within its DFA
+     * @param owner the DFA the state belongs to
+     */
+    DFAState(String name, int id, DFA owner) {
         super(name);
+        this.id = id;
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the id of this state within its DFA
+     *
+     * @return the id, or CompiledDFA.REJECT for a state not added to a DFA
+     */
+    public int getId() {
+        return id;
     }
 
     /**
      * Adds a transition following a Key:Val format using
      * a character from the DFA's alphabet as the key and
-     * a state from the DFA's state set as a value
+     * a state from the DFA's state set as a value.
+     * An existing transition on the character is kept. For a state of a DFA
+     * the change goes through that DFA, so its compiled form sees it.
      *
      * @param alphaChar the character to serve as a key
-     * @param state the state to serve as an associated value
+     * @param state the state to serve as an associated value, a DFAState of the same DFA
+     * @throws IllegalArgumentException if this state belongs to no DFA or state is not a
+     *         state of the same DFA
      */
     public void transition(char alphaChar, State state) {
-        transitions.putIfAbsent(alphaChar, state);
+        if (owner == null || !(state instanceof DFAState) || ((DFAState) state).owner != owner) {
+            throw new IllegalArgumentException("State " + state + " is not a state of the DFA of " + getName());
+        }
+        owner.transition(this, alphaChar, (DFAState) state);
+    }
+
+    /**
+     * Returns the id of the state reached on a character
+     *
+     * @param alphaChar the character read
+     * @return the target id, or CompiledDFA.REJECT if there is no transition on the character
+     */
+    public int getTransitionId(char alphaChar) {
+        if (dense != null) {
+            int i = alphaChar - base;
+            return i >= 0 && i < dense.length ? dense[i] : CompiledDFA.REJECT;
+        }
+        int i = Arrays.binarySearch(keys, 0, size, alphaChar);
+        return i >= 0 ? targets[i] : CompiledDFA.REJECT;
+    }
+
+    /**
+     * Adds or replaces the transition on a character
+     *
+     * @param alphaChar the character read
+     * @param target id of the target state
+     */
+    void setTransition(char alphaChar, int target) {
+        if (dense != null) {
+            int i = alphaChar - base;
+            if (i >= 0 && i < dense.length) {
+                if (dense[i] == CompiledDFA.REJECT) { size++; }
+                dense[i] = target;
+                return;
+            }
+            int low = Math.min(base, alphaChar);
+            int high = Math.max(base + dense.length - 1, alphaChar);
+            if (high - low + 1 <= (size + 1) * 2) {     //Still half full, so widen the array
+                if (alphaChar > base) {                 //Room for more symbols above, keeping it half full
+                    high = Math.min(Character.MAX_VALUE, Math.max(high, low + (size + 1) * 2 - 1));
+                }
+                int[] wider = new int[high - low + 1];
+                Arrays.fill(wider, CompiledDFA.REJECT);
+                System.arraycopy(dense, 0, wider, base - low, dense.length);
+                wider[alphaChar - low] = target;
+                dense = wider;
+                base = (char) low;
+                size++;
+                return;
+            }
+            toSparse();                                 //Symbol far outside the array, back to sorted keys
+        }
+        int i = Arrays.binarySearch(keys, 0, size, alphaChar);
+        if (i >= 0) {
+            targets[i] = target;
+            return;
+        }
+        i = -i - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            targets = Arrays.copyOf(targets, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(targets, i, targets, i + 1, size - i);
+        keys[i] = alphaChar;
+        targets[i] = target;
+        size++;
+        if (size >= DENSE_MIN && keys[size - 1] - keys[0] + 1 <= size * 2) {
+            toDense();
+        }
+    }
+
+    private void toDense() {
+        base = keys[0];
+        dense = new int[keys[size - 1] - base + 1];
+        Arrays.fill(dense, CompiledDFA.REJECT);
+        for (int i = 0; i < size; i++) {
+            dense[keys[i] - base] = targets[i];
+        }
+        keys = null;
+        targets = null;
+    }
+
+    private void toSparse() {
+        keys = new char[Math.max(2, size + 1)];
+        targets = new int[keys.length];
+        int n = 0;
+        for (int i = 0; i < dense.length; i++) {
+            if (dense[i] != CompiledDFA.REJECT) {
+                keys[n] = (char) (base + i);
+                targets[n++] = dense[i];
+            }
+        }
+        dense = null;
+    }
+
+    /**
+     * Returns the number of transitions leaving this state
+     *
+     * @return the transition count
+     */
+    public int transitionCount() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots visited by slotSymbol and slotTarget.
+     * Slots are in ascending symbol order and may be empty.
+     *
+     * @return the slot count
+     */
+    int slots() {
+        return dense != null ? dense.length : size;
+    }
+
+    /**
+     * Returns the symbol of a slot
+     *
+     * @param slot index between 0 and slots()
+     * @return the symbol
+     */
+    char slotSymbol(int slot) {
+        return dense != null ? (char) (base + slot) : keys[slot];
+    }
+
+    /**
+     * Returns the target id of a slot
+     *
+     * @param slot index between 0 and slots()
+     * @return the target id, or CompiledDFA.REJECT for an empty slot
+     */
+    int slotTarget(int slot) {
+        return dense != null ? dense[slot] : targets[slot];
     }
 }
@@ -0,0 +1,122 @@
+package fa.dfa;
+
+/**
+ * Equivalence decides if two DFAs accept the same language with the
+ * Hopcroft-Karp union-find algorithm, which runs in near linear time.
+ * Pairs of states are visited breadth first, so when the languages differ the
+ * first pair found with different finality gives a shortest string accepted
+ * by exactly one of the two DFAs.
+ * Both DFAs are completed with their own dead state, and a symbol missing from
+ * one alphabet leads to that DFA's dead state.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+final class Equivalence {
+    private final int[] parent;     //union-find forest over the states of both DFAs
+    private final int[] rank;
+
+    private Equivalence(int size) {
+        parent = new int[size];
+        rank = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+        }
+    }
+
+    /** Returns a shortest string accepted by exactly one of two DFAs
+     * @param a - the first automaton
+     *        b - the second automaton
+     * @return String - a shortest distinguishing string, or null when the languages are equal
+     **/
+    static String counterexample(CompiledDFA a, CompiledDFA b) {
+        //Union of both alphabets, columns of every symbol in each DFA
+        StringBuilder alphabet = new StringBuilder();
+        for (int i = 0; i < a.symbolCount(); i++) {
+            alphabet.append(a.symbol(i));
+        }
+        for (int i = 0; i < b.symbolCount(); i++) {
+            if (a.symbolIndex(b.symbol(i)) == CompiledDFA.REJECT) {
+                alphabet.append(b.symbol(i));
+            }
+        }
+        int k = alphabet.length();
+        int[] columnA = new int[k];
+        int[] columnB = new int[k];
+        for (int u = 0; u < k; u++) {
+            columnA[u] = a.symbolIndex(alphabet.charAt(u));
+            columnB[u] = b.symbolIndex(alphabet.charAt(u));
+        }
+
+        int deadA = a.stateCount();
+        int offsetB = deadA + 1;                        //States of b follow the states of a
+        int deadB = offsetB + b.stateCount();
+        int size = deadB + 1;
+        Equivalence sets = new Equivalence(size);
+
+        //Breadth first queue of pairs, with the pair and symbol each was reached from
+        int[] left = new int[size];
+        int[] right = new int[size];
+        int[] from = new int[size];
+        int[] via = new int[size];
+        int tail = 0;
+        int startA = a.startState() == CompiledDFA.REJECT ? deadA : a.startState();
+        int startB = b.startState() == CompiledDFA.REJECT ? deadB : offsetB + b.startState();
+        sets.union(startA, startB);
+        left[tail] = startA;
+        right[tail] = startB;
+        from[tail++] = -1;
+
+        for (int head = 0; head < tail; head++) {
+            int p = left[head];
+            int q = right[head];
+            boolean finalP = p != deadA && a.isFinal(p);
+            boolean finalQ = q != deadB && b.isFinal(q - offsetB);
+            if (finalP != finalQ) {                     //Rebuild the string that led to this pair
+                StringBuilder word = new StringBuilder();
+                for (int i = head; from[i] != -1; i = from[i]) {
+                    word.append(alphabet.charAt(via[i]));
+                }
+                return word.reverse().toString();
+            }
+            for (int u = 0; u < k; u++) {
+                int nextP = p == deadA || columnA[u] == CompiledDFA.REJECT ? CompiledDFA.REJECT : a.next(p, columnA[u]);
+                int nextQ = q == deadB || columnB[u] == CompiledDFA.REJECT ? CompiledDFA.REJECT : b.next(q - offsetB, columnB[u]);
+                nextP = nextP == CompiledDFA.REJECT ? deadA : nextP;
+                nextQ = nextQ == CompiledDFA.REJECT ? deadB : offsetB + nextQ;
+                if (sets.union(nextP, nextQ)) {         //Each union adds at most one pair
+                    left[tail] = nextP;
+                    right[tail] = nextQ;
+                    from[tail] = head;
+                    via[tail++] = u;
+                }
+            }
+        }
+        return null;
+    }
+
+    private int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];              //Path halving
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private boolean union(int x, int y) {
+        x = find(x);
+        y = find(y);
+        if (x == y) {
+            return false;
+        }
+        if (rank[x] < rank[y]) {
+            int swap = x;
+            x = y;
+            y = swap;
+        }
+        parent[y] = x;
+        if (rank[x] == rank[y]) {
+            rank[x]++;
+        }
+        return true;
+    }
+}
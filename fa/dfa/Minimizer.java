@@ -0,0 +1,244 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Minimizer builds the smallest DFA accepting the same language as a given one
+ * using Hopcroft's partition refinement, O(n * C * log n) for C table columns.
+ * Only states reachable from the start state take part. Missing transitions
+ * are treated as going to an extra dead state, which is dropped again at the
+ * end unless a state of the original DFA is equivalent to it.
+ * Every state of the result is named after the earliest added state of its
+ * block, and states keep the order in which their names were added.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+final class Minimizer {
+    private final int k;            //columns of the compiled table
+    private final int total;        //reachable states plus the dead state
+    private final int[] elems;      //states grouped by block
+    private final int[] loc;        //position of every state in elems
+    private final int[] blockOf;
+    private final int[] blockStart;
+    private final int[] blockEnd;
+    private final int[] marked;     //number of marked states at the front of every block
+    private int blocks;
+
+    private Minimizer(int k, int total) {
+        this.k = k;
+        this.total = total;
+        elems = new int[total];
+        loc = new int[total];
+        blockOf = new int[total];
+        blockStart = new int[total];
+        blockEnd = new int[total];
+        marked = new int[total];
+    }
+
+    /** Returns the minimal DFA for the language of a compiled DFA
+     * @param dfa - the automaton to minimize
+     * @return DFA - a new DFA with the same alphabet and language and the fewest states
+     **/
+    static DFA minimize(CompiledDFA dfa) {
+        int k = dfa.symbolCount();
+        DFA result = new DFA();
+        for (int a = 0; a < k; a++) {
+            result.addSigma(dfa.symbol(a));
+        }
+        int start = dfa.startState();
+        if (start == CompiledDFA.REJECT) {
+            return result;
+        }
+        int[] column = new int[k];                      //Table column of every symbol of Sigma
+        for (int a = 0; a < k; a++) {
+            column[a] = dfa.symbolIndex(dfa.symbol(a));
+        }
+        int columns = dfa.columnCount();                //Symbols sharing a column are refined once
+
+        //Number the reachable states with a breadth first search
+        int n = dfa.stateCount();
+        int[] local = new int[n];
+        Arrays.fill(local, -1);
+        int[] original = new int[n];
+        int m = 0;
+        local[start] = m;
+        original[m++] = start;
+        for (int head = 0; head < m; head++) {
+            for (int c = 0; c < columns; c++) {
+                int t = dfa.next(original[head], c);
+                if (t != CompiledDFA.REJECT && local[t] < 0) {
+                    local[t] = m;
+                    original[m++] = t;
+                }
+            }
+        }
+
+        //Complete transition table over the reachable states, dead state last
+        int dead = m;
+        int total = m + 1;
+        int[] delta = new int[total * columns];
+        for (int s = 0; s < m; s++) {
+            for (int c = 0; c < columns; c++) {
+                int t = dfa.next(original[s], c);
+                delta[s * columns + c] = t == CompiledDFA.REJECT ? dead : local[t];
+            }
+        }
+        Arrays.fill(delta, dead * columns, total * columns, dead);
+
+        Minimizer partition = new Minimizer(columns, total);
+        partition.refine(delta, dfa, original, m);
+        return partition.build(result, dfa, column, original, m);
+    }
+
+    private void refine(int[] delta, CompiledDFA dfa, int[] original, int m) {
+        //Inverse transitions: sources of every (symbol, target) pair
+        int[] invStart = new int[k * total + 1];
+        for (int s = 0; s < total; s++) {
+            for (int a = 0; a < k; a++) {
+                invStart[a * total + delta[s * k + a] + 1]++;
+            }
+        }
+        for (int i = 0; i < k * total; i++) {
+            invStart[i + 1] += invStart[i];
+        }
+        int[] fill = Arrays.copyOf(invStart, k * total);
+        int[] invSource = new int[k * total];
+        for (int s = 0; s < total; s++) {
+            for (int a = 0; a < k; a++) {
+                invSource[fill[a * total + delta[s * k + a]]++] = s;
+            }
+        }
+
+        //Initial partition: final states, then the others
+        int count = 0;
+        for (int s = 0; s < m; s++) {
+            if (dfa.isFinal(original[s])) { place(s, count++); }
+        }
+        int finals = count;
+        for (int s = 0; s < total; s++) {
+            if (s == m || !dfa.isFinal(original[s])) { place(s, count++); }
+        }
+        int[] work = new int[total];
+        int workSize = 0;
+        if (finals == 0 || finals == total) {
+            addBlock(0, total);
+        } else {
+            int f = addBlock(0, finals);
+            int o = addBlock(finals, total);
+            int smaller = finals <= total - finals ? f : o;
+            work[workSize++] = smaller;
+        }
+
+        int[] splitter = new int[total];
+        int[] touched = new int[total];
+        while (workSize > 0) {
+            int block = work[--workSize];
+            int size = blockEnd[block] - blockStart[block];
+            System.arraycopy(elems, blockStart[block], splitter, 0, size); //Block may split while in use
+            for (int a = 0; a < k; a++) {
+                int touchedCount = 0;
+                for (int j = 0; j < size; j++) {
+                    int column = a * total + splitter[j];
+                    for (int e = invStart[column]; e < invStart[column + 1]; e++) {
+                        int p = invSource[e];
+                        int x = blockOf[p];
+                        int front = blockStart[x] + marked[x];
+                        if (loc[p] >= front) {          //Move p into the marked front of its block
+                            int other = elems[front];
+                            elems[loc[p]] = other;
+                            loc[other] = loc[p];
+                            elems[front] = p;
+                            loc[p] = front;
+                            if (marked[x]++ == 0) { touched[touchedCount++] = x; }
+                        }
+                    }
+                }
+                for (int t = 0; t < touchedCount; t++) {
+                    int x = touched[t];
+                    int split = blockStart[x] + marked[x];
+                    marked[x] = 0;
+                    if (split == blockEnd[x]) {
+                        continue;                       //Every state of the block was marked
+                    }
+                    int y;                              //The new block is always the smaller half
+                    if (split - blockStart[x] <= blockEnd[x] - split) {
+                        y = addBlock(blockStart[x], split);
+                        blockStart[x] = split;
+                    } else {
+                        y = addBlock(split, blockEnd[x]);
+                        blockEnd[x] = split;
+                    }
+                    work[workSize++] = y;               //Hopcroft's rule: the smaller half is always enough
+                }
+            }
+        }
+    }
+
+    private void place(int state, int position) {
+        elems[position] = state;
+        loc[state] = position;
+    }
+
+    private int addBlock(int from, int to) {
+        int block = blocks++;
+        blockStart[block] = from;
+        blockEnd[block] = to;
+        for (int i = from; i < to; i++) {
+            blockOf[elems[i]] = block;
+        }
+        return block;
+    }
+
+    private DFA build(DFA result, CompiledDFA dfa, int[] column, int[] original, int m) {
+        //Every block is represented by its earliest added state
+        int[] representative = new int[blocks];
+        Arrays.fill(representative, Integer.MAX_VALUE);
+        for (int s = 0; s < m; s++) {
+            int b = blockOf[s];
+            representative[b] = Math.min(representative[b], original[s]);
+        }
+        Integer[] order = new Integer[blocks];
+        int kept = 0;
+        for (int b = 0; b < blocks; b++) {
+            if (representative[b] != Integer.MAX_VALUE) {   //Block holding only the added dead state is dropped
+                order[kept++] = b;
+            }
+        }
+        Arrays.sort(order, 0, kept, (x, y) -> Integer.compare(representative[x], representative[y]));
+
+        int[] first = new int[blocks];                  //A reachable member of every block
+        for (int s = m - 1; s >= 0; s--) {
+            first[blockOf[s]] = s;
+        }
+        int[] id = new int[blocks];                     //Id of every kept block in the result
+        Arrays.fill(id, CompiledDFA.REJECT);
+        for (int i = 0; i < kept; i++) {
+            id[order[i]] = i;
+        }
+        int[] newId = new int[dfa.stateCount()];        //Id in the result of every reachable original state
+        for (int s = 0; s < m; s++) {
+            newId[original[s]] = id[blockOf[s]];
+        }
+        result.states = new LinkedHashMap<>(kept * 4 / 3 + 1);
+        result.byId.ensureCapacity(kept);
+        for (int i = 0; i < kept; i++) {                //Fill the result by id, as addState would one at a time
+            int b = order[i];
+            int member = original[first[b]];
+            DFAState state = new DFAState(dfa.stateName(representative[b]), i, result);
+            for (int a = 0; a < column.length; a++) {
+                int t = dfa.next(member, column[a]);
+                if (t != CompiledDFA.REJECT && newId[t] != CompiledDFA.REJECT) {
+                    state.setTransition(dfa.symbol(a), newId[t]);
+                }
+            }
+            result.states.put(state.getName(), state);
+            result.byId.add(state);
+            if (dfa.isFinal(member)) {
+                result.finals.set(i);
+            }
+        }
+        result.start = id[blockOf[0]];
+        return result;
+    }
+}
@@ -0,0 +1,125 @@
+package fa.dfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelAccepts runs one CompiledDFA over one very long input on several threads.
+ * The input is cut into chunks that run at the same time on the common
+ * ForkJoinPool. Only the first chunk knows its starting state, so every other
+ * chunk follows all states at once and returns the state each one ends in.
+ * Starting states that reach the same state are merged and followed as one,
+ * and once a single state is left the chunk finishes with the plain run loop,
+ * so for a small automaton a chunk costs little more than a sequential run.
+ * The end states of the chunks are then composed in input order. An automaton
+ * whose states never merge, such as one counting modulo |Q|, makes each chunk
+ * cost |Q| times a sequential run.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+@SuppressWarnings("serial")
+final class ParallelAccepts extends RecursiveTask<int[]> {
+    /**
+     * Shortest chunk given to one task. Shorter inputs run sequentially.
+     */
+    static final int MIN_CHUNK = 1 << 16;
+
+    private final CompiledDFA engine;
+    private final CharSequence in;
+    private final int from;
+    private final int to;
+    private final boolean first;
+
+    private ParallelAccepts(CompiledDFA engine, CharSequence in, int from, int to, boolean first) {
+        this.engine = engine;
+        this.in = in;
+        this.from = from;
+        this.to = to;
+        this.first = first;
+    }
+
+    /** Runs the automaton over a whole input from its start state
+     * @param engine - the automaton to run
+     *        in - the input, which must not change while it is read
+     * @return int - id of the state reached, or CompiledDFA.REJECT
+     **/
+    static int run(CompiledDFA engine, CharSequence in) {
+        int start = engine.startState();
+        int length = in.length();
+        int threads = ForkJoinPool.getCommonPoolParallelism();
+        int chunks = threads > 1 ? Math.min(threads * 4, length / MIN_CHUNK) : 1;   //One thread gains nothing
+        if (start == CompiledDFA.REJECT || chunks <= 1) {
+            return start == CompiledDFA.REJECT ? start : engine.run(start, in, 0, length);
+        }
+        List<ParallelAccepts> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            tasks.add(new ParallelAccepts(engine, in, (int) ((long) length * c / chunks),
+                    (int) ((long) length * (c + 1) / chunks), c == 0));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        int state = tasks.get(0).join()[0];
+        for (int c = 1; c < chunks && state != CompiledDFA.REJECT; c++) {
+            state = tasks.get(c).join()[state];         //Compose the chunks in order
+        }
+        return state;
+    }
+
+    /** Runs this chunk
+     * @return int[] - for the first chunk, the state it ends in. For any other chunk, entry s
+     *                 is the state reached when the chunk is read from state s.
+     **/
+    @Override
+    protected int[] compute() {
+        if (first) {
+            return new int[] {engine.run(engine.startState(), in, from, to)};
+        }
+        int n = engine.stateCount();
+        int[] owner = new int[n];       //group followed by each starting state, REJECT once it rejects
+        int[] group = new int[n];       //current state of each group
+        for (int s = 0; s < n; s++) {
+            owner[s] = s;
+            group[s] = s;
+        }
+        int groups = n;
+        int[] remap = new int[n];       //group of the last step to group of this step
+        int[] slot = new int[n];        //group holding state s, valid when stamp[s] is this step
+        int[] stamp = new int[n];
+        int step = 0;
+        int i = from;
+        for (; i < to && groups > 1; i++) {
+            int c = engine.symbolIndex(in.charAt(i));
+            int merged = 0;
+            step++;
+            for (int g = 0; g < groups; g++) {
+                int t = c == CompiledDFA.REJECT ? CompiledDFA.REJECT : engine.next(group[g], c);
+                if (t == CompiledDFA.REJECT) {
+                    remap[g] = CompiledDFA.REJECT;      //Group is dropped
+                } else if (stamp[t] == step) {
+                    remap[g] = slot[t];                 //Group merges with an earlier one
+                } else {
+                    stamp[t] = step;
+                    slot[t] = merged;
+                    group[merged] = t;
+                    remap[g] = merged++;
+                }
+            }
+            if (merged != groups) {
+                for (int s = 0; s < n; s++) {
+                    if (owner[s] != CompiledDFA.REJECT) { owner[s] = remap[owner[s]]; }
+                }
+                groups = merged;
+            }
+        }
+        if (groups == 1) {
+            group[0] = engine.run(group[0], in, i, to);  //Every live start state agrees from here on
+        }
+        int[] end = new int[n];
+        for (int s = 0; s < n; s++) {
+            end[s] = owner[s] == CompiledDFA.REJECT ? CompiledDFA.REJECT : group[owner[s]];
+        }
+        return end;
+    }
+}
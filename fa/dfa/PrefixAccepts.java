@@ -0,0 +1,63 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * PrefixAccepts tests a batch of inputs that share prefixes, such as paths.
+ * The inputs are read in sorted order, which walks them like a trie that is
+ * never built. The state reached after every character of the last input is
+ * kept on a stack, so each input starts from the state at the end of the
+ * prefix it shares with the last one and only reads the rest. Runs of a
+ * rejected prefix are answered without reading at all.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+final class PrefixAccepts {
+    private PrefixAccepts() {
+
+    }
+
+    /** Tests every input of a batch, reading shared prefixes once
+     * @param engine - the automaton to run
+     *        inputs - the strings to test
+     *        sort - true to sort the inputs first, false to read them in the order given
+     * @return boolean[] - entry i is true when inputs[i] is accepted
+     **/
+    static boolean[] run(CompiledDFA engine, CharSequence[] inputs, boolean sort) {
+        boolean[] results = new boolean[inputs.length];
+        Integer[] order = new Integer[inputs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        if (sort) {
+            Arrays.sort(order, (a, b) -> CharSequence.compare(inputs[a], inputs[b]));
+        }
+
+        int[] stack = new int[64];      //stack[d] is the state after the first d characters of last
+        stack[0] = engine.startState();
+        CharSequence last = "";
+        int known = 0;                  //deepest entry of the stack that is filled in
+        for (Integer i : order) {
+            CharSequence in = inputs[i];
+            int length = in.length();
+            int depth = 0;
+            int shared = Math.min(known, Math.min(length, last.length()));
+            while (depth < shared && in.charAt(depth) == last.charAt(depth)) {
+                depth++;
+            }
+            if (length >= stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(length + 1, stack.length * 2));
+            }
+            int state = stack[depth];
+            while (depth < length && state != CompiledDFA.REJECT) {
+                int c = engine.symbolIndex(in.charAt(depth++));
+                state = c == CompiledDFA.REJECT ? CompiledDFA.REJECT : engine.next(state, c);
+                stack[depth] = state;
+            }
+            known = depth;              //Deeper entries are REJECT or belong to an older input
+            last = in;
+            results[i] = engine.isFinal(state);
+        }
+        return results;
+    }
+}
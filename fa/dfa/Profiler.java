@@ -0,0 +1,193 @@
+package fa.dfa;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Profiler counts how often accepts visits every state and follows every
+ * transition of a DFA.
+ * Each thread counts into its own tables, so profiled threads never share a
+ * counter or a lock. A snapshot adds up the tables of every thread. Tables
+ * are sparse and only hold the states and transitions that were used, so a
+ * large automaton costs no more than the part of it the input reaches.
+ * Transitions are counted by the symbol read, even where symbols share a
+ * column of the transition table.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+final class Profiler {
+    private final Queue<Counters> threads = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Counters> local = ThreadLocal.withInitial(this::register);
+
+    /**
+     * Counters of one thread. Only that thread writes them.
+     */
+    private static final class Counters {
+        volatile Counts visits = new Counts(16);    //by state id
+        volatile Counts edges = new Counts(16);     //by edge(state, symbol)
+    }
+
+    /**
+     * Open addressing map from a non-negative long key to a count. A full map is
+     * replaced by a larger copy rather than resized in place, so a thread reading
+     * it while it grows sees the old copy, never a half moved one.
+     */
+    static final class Counts {
+        private static final int MAX_CAPACITY = 1 << 30;
+
+        private final long[] keys;      //key + 1 of every slot, 0 for an empty slot
+        private final long[] counts;
+        private int size;
+
+        Counts(int capacity) {
+            keys = new long[capacity];
+            counts = new long[capacity];
+        }
+
+        /** Adds to the count of a key
+         * @param key - the key, at least 0
+         *        delta - the amount added
+         * @return Counts - this, or a larger copy holding every count once this one was full
+         * @throws IllegalStateException if more keys are counted than the largest map can hold
+         **/
+        Counts add(long key, long delta) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == key + 1) {
+                    counts[i] += delta;
+                    return this;
+                }
+                if (keys[i] == 0) {
+                    if ((size + 1) * 4L > keys.length * 3L) {
+                        return grow().add(key, delta);
+                    }
+                    counts[i] = delta;
+                    keys[i] = key + 1;
+                    size++;
+                    return this;
+                }
+            }
+        }
+
+        /** Adds every count of another map to this one
+         * @param other - the map to add, which its owner may still be changing
+         * @return Counts - this, or a larger copy once this one was full
+         **/
+        Counts addAll(Counts other) {
+            Counts sum = this;
+            for (int i = 0; i < other.keys.length; i++) {
+                long key = other.keys[i];
+                if (key != 0) {
+                    sum = sum.add(key - 1, other.counts[i]);
+                }
+            }
+            return sum;
+        }
+
+        /** Returns the count of a key
+         * @param key - the key
+         * @return long - its count, 0 if it was never counted
+         **/
+        long get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key + 1) {
+                    return counts[i];
+                }
+            }
+            return 0;
+        }
+
+        /** Returns the number of slots visited by key and count
+         * @return int - the slot count
+         **/
+        int slots() {
+            return keys.length;
+        }
+
+        /** Returns the key of a slot
+         * @param slot - index between 0 and slots()
+         * @return long - the key, or -1 for an empty slot
+         **/
+        long key(int slot) {
+            return keys[slot] - 1;
+        }
+
+        /** Returns the count of a slot
+         * @param slot - index between 0 and slots()
+         * @return long - the count, 0 for an empty slot
+         **/
+        long count(int slot) {
+            return counts[slot];
+        }
+
+        private static int slot(long key, int mask) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 33) & mask;
+        }
+
+        private Counts grow() {
+            if (keys.length >= MAX_CAPACITY) {
+                throw new IllegalStateException("Cannot profile more than " + size + " states or transitions");
+            }
+            return new Counts(keys.length * 2).addAll(this);
+        }
+    }
+
+    /** Returns the key of a transition in the edge counts
+     * @param state - id of the state the transition leaves
+     *        symbol - the symbol read
+     * @return long - the key
+     **/
+    static long edge(int state, char symbol) {
+        return ((long) state << 32) | symbol;
+    }
+
+    private Counters register() {
+        Counters counters = new Counters();
+        threads.add(counters);
+        return counters;
+    }
+
+    /** Travels an engine like CompiledDFA.accepts, counting every state and transition on the way
+     * @param engine - the current version of the DFA
+     *        s - the input being tested
+     * @return boolean - true if the engine accepts the input
+     **/
+    boolean accepts(CompiledDFA engine, CharSequence s) {
+        int state = engine.startState();
+        if (state == CompiledDFA.REJECT) {
+            return false;
+        }
+        Counters counters = local.get();
+        Counts visits = counters.visits.add(state, 1);
+        Counts edges = counters.edges;
+        for (int i = 0; i < s.length() && state != CompiledDFA.REJECT; i++) {
+            char symbol = s.charAt(i);
+            int c = engine.symbolIndex(symbol);
+            int next = c == CompiledDFA.REJECT ? CompiledDFA.REJECT : engine.next(state, c);
+            if (next != CompiledDFA.REJECT) {
+                edges = edges.add(edge(state, symbol), 1);
+                visits = visits.add(next, 1);
+            }
+            state = next;
+        }
+        counters.visits = visits;       //Publish copies made when a map grew
+        counters.edges = edges;
+        return engine.isFinal(state);
+    }
+
+    /** Adds up the counts of every thread
+     * Counts of threads that are still profiling may be a little behind.
+     * @param engine - the current version of the DFA, used for names and symbols
+     * @return DFAProfile - the totals
+     **/
+    DFAProfile snapshot(CompiledDFA engine) {
+        Counts visits = new Counts(16);
+        Counts edges = new Counts(16);
+        for (Counters counters : threads) {
+            visits = visits.addAll(counters.visits);
+            edges = edges.addAll(counters.edges);
+        }
+        return new DFAProfile(engine, visits, edges);
+    }
+}
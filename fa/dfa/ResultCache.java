@@ -0,0 +1,97 @@
+package fa.dfa;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ResultCache remembers the answers of one CompiledDFA for recently tested strings.
+ * Entries are spread over segments by hash. Each segment is a small LRU map
+ * with its own lock, so threads testing different strings rarely wait on each
+ * other, and each segment drops its least recently used string once full.
+ * A cache only ever holds answers of the engine it was made for. When the
+ * DFA publishes a new version, the cache is replaced by an empty one that
+ * keeps the same size and counters.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+final class ResultCache {
+    private final CompiledDFA engine;
+    private final int maxEntries;
+    private final Segment[] segments;
+    private final int mask;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * One lock's worth of entries, in order of last use
+     */
+    @SuppressWarnings("serial")
+    private static final class Segment extends LinkedHashMap<String, Boolean> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    ResultCache(CompiledDFA engine, int maxEntries, LongAdder hits, LongAdder misses) {
+        this.engine = engine;
+        this.maxEntries = maxEntries;
+        this.hits = hits;
+        this.misses = misses;
+        int count = Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors() * 4, 64));
+        while (count > 1 && maxEntries / count < 16) {
+            count >>>= 1;                               //Keep segments big enough to be useful
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(Math.max(1, maxEntries / count));
+        }
+        this.mask = count - 1;
+    }
+
+    /** Returns the engine whose answers this cache holds
+     * @return CompiledDFA - the engine
+     **/
+    CompiledDFA engine() {
+        return engine;
+    }
+
+    /** Returns an empty cache for another engine with the same size and counters
+     * @param next - the engine the new cache answers for
+     * @return ResultCache - the new cache
+     **/
+    ResultCache renew(CompiledDFA next) {
+        return new ResultCache(next, maxEntries, hits, misses);
+    }
+
+    /** Returns if the engine accepts a string, running it only when the answer is not cached
+     * @param s - the input being tested
+     * @return boolean - true if the engine accepts the input
+     **/
+    boolean accepts(String s) {
+        int h = s.hashCode();
+        Segment segment = segments[(h ^ (h >>> 16)) & mask];
+        Boolean cached;
+        synchronized (segment) {
+            cached = segment.get(s);                    //Also marks the entry as just used
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        boolean accepted = engine.accepts(s);           //Run outside the lock
+        synchronized (segment) {
+            segment.put(s, accepted);
+        }
+        return accepted;
+    }
+}
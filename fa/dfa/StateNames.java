@@ -0,0 +1,127 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * StateNames maps state ids to their labels and back.
+ * Names are kept either as Strings or as one character array with the start
+ * offset of every name, which is how they are read from a binary DFA file.
+ * In the second form a String is only made for a name that is asked for. In
+ * both the index from name to id is only built the first time it is needed.
+ * Names of states added after the engine was built are appended in pages
+ * after the others, so adding one copies a single page and the names and
+ * index of the original states are shared by every later version.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+final class StateNames {
+    private static final int TAIL_SHIFT = 7;
+    private static final int TAIL_MASK = (1 << TAIL_SHIFT) - 1;
+    private static final String[][] NO_TAIL = new String[0][];
+
+    private final String[] names;   //null when names are only kept in chars
+    private final char[] chars;
+    private final int[] offsets;    //name i is chars[offsets[i]] to chars[offsets[i + 1]]
+    private final StateNames root;  //holder of the original names, this for the holder itself
+    private final int rootCount;    //number of original names
+    private final String[][] tail;  //names appended after the original ones, by page
+    private final int tailCount;
+    private volatile Map<String, Integer> ids;      //index of the original names, only used on root
+    private volatile Map<String, Integer> tailIds;  //index of the appended names
+
+    StateNames(String[] names) {
+        this.names = names;
+        this.chars = null;
+        this.offsets = null;
+        this.root = this;
+        this.rootCount = names.length;
+        this.tail = NO_TAIL;
+        this.tailCount = 0;
+    }
+
+    StateNames(char[] chars, int[] offsets) {
+        this.names = null;
+        this.chars = chars;
+        this.offsets = offsets;
+        this.root = this;
+        this.rootCount = offsets.length - 1;
+        this.tail = NO_TAIL;
+        this.tailCount = 0;
+    }
+
+    private StateNames(StateNames root, String[][] tail, int tailCount) {
+        this.names = null;
+        this.chars = null;
+        this.offsets = null;
+        this.root = root;
+        this.rootCount = root.rootCount;
+        this.tail = tail;
+        this.tailCount = tailCount;
+    }
+
+    /** Returns these names with one more appended, leaving these unchanged
+     * @param name - label of the new state, whose id is the current number of names
+     * @return StateNames - names sharing all but the last page of appended names with these
+     **/
+    StateNames with(String name) {
+        int p = tailCount >>> TAIL_SHIFT;
+        String[][] pages = Arrays.copyOf(tail, p + 1);
+        pages[p] = p < tail.length ? Arrays.copyOf(tail[p], (tailCount & TAIL_MASK) + 1) : new String[1];
+        pages[p][tailCount & TAIL_MASK] = name;
+        return new StateNames(root, pages, tailCount + 1);
+    }
+
+    /** Returns the label of a state
+     * @param state - id of the state
+     * @return String - the state label
+     **/
+    String name(int state) {
+        if (state >= rootCount) {
+            int i = state - rootCount;
+            return tail[i >>> TAIL_SHIFT][i & TAIL_MASK];
+        }
+        if (root.names != null) {
+            return root.names[state];
+        }
+        return new String(root.chars, root.offsets[state], root.offsets[state + 1] - root.offsets[state]);
+    }
+
+    /** Returns the id of a state
+     * @param name - the state label
+     * @return int - id of the state or CompiledDFA.REJECT if no state has that name
+     **/
+    int id(String name) {
+        Integer id = root.index().get(name);
+        if (id == null && tailCount > 0) {
+            Map<String, Integer> index = tailIds;
+            if (index == null) {                        //Racing threads build equal copies
+                index = new HashMap<>(tailCount * 2);
+                for (int i = 0; i < tailCount; i++) {
+                    index.put(name(rootCount + i), rootCount + i);
+                }
+                tailIds = index;
+            }
+            id = index.get(name);
+        }
+        return id == null ? CompiledDFA.REJECT : id;
+    }
+
+    private Map<String, Integer> index() {
+        Map<String, Integer> index = ids;
+        if (index == null) {
+            synchronized (this) {
+                index = ids;
+                if (index == null) {
+                    index = new HashMap<>(rootCount * 2);
+                    for (int s = 0; s < rootCount; s++) {
+                        index.put(name(s), s);
+                    }
+                    ids = index;
+                }
+            }
+        }
+        return index;
+    }
+}
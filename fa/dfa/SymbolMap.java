@@ -0,0 +1,101 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * SymbolMap maps alphabet characters to their index in Sigma.
+ * Characters 0-255 are looked up in a flat array so that ASCII and Latin-1
+ * input never touches a hash table. Any other character falls back to a map.
+ * Characters outside of the alphabet map to CompiledDFA.REJECT.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+final class SymbolMap {
+    /**
+     * Number of characters covered by the direct lookup array
+     */
+    static final int DIRECT = 256;
+
+    private final int[] direct;
+    private final HashMap<Character, Integer> fallback;
+    private int size;
+
+    SymbolMap() {
+        direct = new int[DIRECT];
+        Arrays.fill(direct, CompiledDFA.REJECT);
+        fallback = new HashMap<>();
+    }
+
+    private SymbolMap(SymbolMap other) {
+        direct = other.direct.clone();
+        fallback = new HashMap<>(other.fallback);
+        size = other.size;
+    }
+
+    /** Gives a symbol the next free index
+     * @param symbol - the character to add
+     * @return boolean - true - the symbol was added
+     *                   false - the symbol was already mapped
+     **/
+    boolean add(char symbol) {
+        if (indexOf(symbol) != CompiledDFA.REJECT) {
+            return false;
+        }
+        put(symbol, size++);
+        return true;
+    }
+
+    /** Maps a symbol to a given index
+     * @param symbol - the character to map
+     *        index - the value stored for the character
+     **/
+    void put(char symbol, int index) {
+        if (symbol < DIRECT) {
+            direct[symbol] = index;
+        } else {
+            fallback.put(symbol, index);
+        }
+    }
+
+    /** Returns the index of a symbol
+     * @param symbol - the character to look up
+     * @return int - the index of the symbol or CompiledDFA.REJECT
+     **/
+    int indexOf(char symbol) {
+        if (symbol < DIRECT) {
+            return direct[symbol];
+        }
+        Integer index = fallback.get(symbol);
+        return index == null ? CompiledDFA.REJECT : index;
+    }
+
+    /** Returns the direct lookup array for characters 0-255
+     * The array is shared, callers must not change it.
+     * @return int[] - index of every Latin-1 character
+     **/
+    int[] direct() {
+        return direct;
+    }
+
+    /** Returns if any character above 255 is mapped
+     * @return boolean - true if the fallback map is in use
+     **/
+    boolean hasFallback() {
+        return !fallback.isEmpty();
+    }
+
+    /** Returns the number of symbols added through add
+     * @return int - |Sigma|
+     **/
+    int size() {
+        return size;
+    }
+
+    /** Returns an independent copy of this map
+     * @return SymbolMap - copy that later changes to this map do not affect
+     **/
+    SymbolMap copy() {
+        return new SymbolMap(this);
+    }
+}
@@ -0,0 +1,85 @@
+package fa.dfa;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Trimmer removes the states of a DFA that cannot take part in accepting a string:
+ * those that cannot be reached from the start state and those from which no
+ * final state can be reached. Both searches keep their own queue instead of
+ * recursing, so they handle millions of states. The states that are kept
+ * are renumbered densely in their original order and keep their names, and
+ * transitions into removed states are dropped, which does not change the
+ * language. The start state is always kept.
+ * @author Luis Acosta
+ * @author Spencer Ford
+ */
+final class Trimmer {
+    private Trimmer() {
+
+    }
+
+    /** Returns a DFA with only the useful states of a compiled DFA
+     * @param dfa - the automaton to trim
+     * @return DFA - a new DFA with the same alphabet and language
+     **/
+    static DFA trim(CompiledDFA dfa) {
+        int k = dfa.symbolCount();
+        DFA result = new DFA();
+        for (int a = 0; a < k; a++) {
+            result.addSigma(dfa.symbol(a));
+        }
+        int start = dfa.startState();
+        if (start == CompiledDFA.REJECT) {
+            return result;
+        }
+        int[] column = new int[k];
+        for (int a = 0; a < k; a++) {
+            column[a] = dfa.symbolIndex(dfa.symbol(a));
+        }
+
+        //Breadth first search from the start state through states that can still accept
+        int n = dfa.stateCount();
+        int columns = dfa.columnCount();
+        boolean[] kept = new boolean[n];
+        int[] queue = new int[n];
+        int tail = 0;
+        kept[start] = true;
+        queue[tail++] = start;
+        for (int head = 0; head < tail; head++) {
+            for (int c = 0; c < columns; c++) {
+                int t = dfa.next(queue[head], c);
+                if (t != CompiledDFA.REJECT && !kept[t] && dfa.canAccept(t)) {
+                    kept[t] = true;
+                    queue[tail++] = t;
+                }
+            }
+        }
+
+        int[] id = new int[n];                          //New id of every kept state
+        int m = 0;
+        for (int s = 0; s < n; s++) {
+            id[s] = kept[s] ? m++ : CompiledDFA.REJECT;
+        }
+        result.states = new LinkedHashMap<>(m * 4 / 3 + 1);
+        result.byId.ensureCapacity(m);
+        for (int s = 0; s < n; s++) {
+            if (!kept[s]) {
+                continue;
+            }
+            DFAState state = new DFAState(dfa.stateName(s), id[s], result);
+            for (int a = 0; a < k; a++) {
+                int t = dfa.next(s, column[a]);
+                if (t != CompiledDFA.REJECT && kept[t]) {
+                    state.setTransition(dfa.symbol(a), id[t]);
+                }
+            }
+            result.states.put(state.getName(), state);
+            result.byId.add(state);
+            if (dfa.isFinal(s)) {
+                result.finals.set(id[s]);
+            }
+        }
+        result.start = id[start];
+        return result;
+    }
+}
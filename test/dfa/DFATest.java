@@ -2,11 +2,35 @@ package test.dfa;
 
 //import org.junit.*;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 
+import fa.dfa.CompiledDFA;
 import fa.dfa.DFA;
+import fa.dfa.DFAFileScanner;
+import fa.dfa.DFAMatcher;
+import fa.dfa.DFAProfile;
+import fa.dfa.DFAReader;
+import fa.dfa.DFASet;
+import fa.dfa.DFAState;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -1835,5 +1859,1206 @@ public class DFATest {
 		System.out.println("dfa14Swap accept pass");
 	}
 
-}
+	//------------------- compiled dfa tests ----------------------//
+	@Test
+	public void testCompiled_1() {
+		DFA dfa = dfa2();
+		CompiledDFA engine = dfa.compile();
+		assertSame(engine, dfa.compile());
+		assertEquals(4, engine.stateCount());
+		assertEquals(2, engine.symbolCount());
+
+		assertFalse(engine.accepts("010"));
+		assertTrue(engine.accepts("00"));
+		assertTrue(engine.accepts("111011111111110"));
+		assertFalse(engine.accepts("2"));
+
+		//changing the DFA drops the cached engine
+		assertTrue(dfa.setFinal("2"));
+		assertNotSame(engine, dfa.compile());
+		assertTrue(dfa.accepts("01"));
+		assertFalse(engine.accepts("01"));
+
+		System.out.println("compiled dfa pass");
+	}
+
+	@Test
+	public void testCompiled_2() {
+		DFA dfa = dfa1();
+		List<String> small = List.of("0", "1", "00", "101", "e");
+		BitSet accepted = dfa.acceptsAll(small);
+		assertEquals(2, accepted.cardinality());
+		assertTrue(accepted.get(1));
+		assertTrue(accepted.get(3));
+		assertEquals(2, dfa.countAccepted(small));
+
+		//large enough to be split across the pool
+		String[] large = new String[10000];
+		for (int i = 0; i < large.length; i++) {
+			large[i] = Integer.toBinaryString(i);
+		}
+		boolean[] results = dfa.acceptsAll(large);
+		int count = 0;
+		for (int i = 0; i < large.length; i++) {
+			assertEquals(dfa.accepts(large[i]), results[i]);
+			if (results[i]) { count++; }
+		}
+		assertEquals(count, dfa.countAccepted(large));
+
+		System.out.println("batch accepts pass");
+	}
+
+	@Test
+	public void testCompiled_3() {
+		DFA dfa = dfa2();
+		DFAMatcher matcher = dfa.newMatcher();
+		assertEquals("0", matcher.currentState());
+		assertTrue(matcher.feed("1110".toCharArray(), 0, 4));
+		assertFalse(matcher.isAccepting());
+		assertTrue(matcher.feed(CharBuffer.wrap("1111")));
+		assertTrue(matcher.feed("x11110x", 1, 5));
+		assertTrue(matcher.isAccepting());
+		assertEquals("3", matcher.currentState());
+
+		matcher.reset();
+		assertTrue(matcher.feed("00", 0, 2));
+		assertTrue(matcher.isAccepting());
+		assertFalse(matcher.feed("2", 0, 1));
+		assertFalse(matcher.isAccepting());
+		assertNull(matcher.currentState());
+
+		System.out.println("matcher pass");
+	}
+
+	@Test
+	public void testCompiled_4() throws IOException {
+		DFA dfa = dfa1();
+		Path file = Files.createTempFile("dfa", ".txt");
+		try {
+			Files.writeString(file, "0\n1\n00\n101\ne\n\n11");
+			List<Boolean> seen = new ArrayList<>();
+			DFAFileScanner.Result result = dfa.scanFile(file, (byte) '\n', (record, accepted) -> {
+				assertEquals(seen.size(), record);
+				seen.add(accepted);
+			});
+			assertEquals(7, result.records());
+			assertEquals(3, result.accepted());
+			assertEquals(List.of(false, true, false, true, false, false, true), seen);
+			assertEquals(3, dfa.scanFile(file).accepted());
+		} finally {
+			Files.delete(file);
+		}
+
+		System.out.println("file scan pass");
+	}
+
+	@Test
+	public void testCompiled_5() {
+		//strings ending in 1, with two copies of each state and an unreachable one
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		for (String name : new String[] {"a", "b", "c", "d", "u"}) {
+			assertTrue(dfa.addState(name));
+		}
+		assertTrue(dfa.setStart("a"));
+		assertTrue(dfa.setFinal("b"));
+		assertTrue(dfa.setFinal("d"));
+		assertTrue(dfa.addTransition("a", "c", '0'));
+		assertTrue(dfa.addTransition("a", "b", '1'));
+		assertTrue(dfa.addTransition("b", "a", '0'));
+		assertTrue(dfa.addTransition("b", "d", '1'));
+		assertTrue(dfa.addTransition("c", "a", '0'));
+		assertTrue(dfa.addTransition("c", "d", '1'));
+		assertTrue(dfa.addTransition("d", "c", '0'));
+		assertTrue(dfa.addTransition("d", "b", '1'));
+		assertTrue(dfa.addTransition("u", "u", '0'));
+		assertTrue(dfa.addTransition("u", "u", '1'));
+
+		DFA min = dfa.minimize();
+		assertEquals(2, min.compile().stateCount());
+		assertTrue(min.isStart("a"));
+		assertTrue(min.isFinal("b"));
+		assertNull(min.getState("u"));
+		for (int i = 0; i < 256; i++) {
+			String input = Integer.toBinaryString(i);
+			assertEquals(dfa.accepts(input), min.accepts(input));
+		}
+		String expStr = "Q = { a b }\n"
+				+ "Sigma = { 0 1 }\n"
+				+ "delta =\n"
+				+ "		0	1\n"
+				+ "	a	a	b\n"
+				+ "	b	a	b\n"
+				+ "q0 = a\n"
+				+ "F = { b }";
+		assertEquals(expStr.replaceAll("\\s", ""), min.toString().replaceAll("\\s", ""));
+
+		//dfa2 is already minimal
+		assertEquals(4, dfa2().minimize().compile().stateCount());
+
+		System.out.println("minimize pass");
+	}
+
+	@Test
+	public void testCompiled_6() {
+		DFA dfa = dfa1();
+		assertTrue(dfa.equivalentTo(dfa.minimize()));
+		assertTrue(dfa.equivalentTo(dfa.swap('0', '1').swap('0', '1')));
+		assertNull(dfa.distinguishingString(dfa1()));
+
+		assertEquals("1", dfa.distinguishingString(dfa2()));
+		assertEquals("0", dfa.distinguishingString(dfa.swap('0', '1')));
 
+		//start state final in only one of them
+		DFA other = dfa1();
+		assertTrue(other.setFinal("a"));
+		assertEquals("", dfa.distinguishingString(other));
+		assertFalse(dfa.equivalentTo(other));
+
+		System.out.println("equivalence pass");
+	}
+
+	@Test
+	public void testCompiled_7() {
+		DFA dfa = dfa1();
+		DFA dfaSwap = dfa.swap('1', '0').swap('0', '1').swap('1', '0');
+		assertTrue(dfaSwap.accepts("010"));
+		assertFalse(dfaSwap.accepts("1"));
+		assertTrue(dfaSwap.equivalentTo(dfa.swap('0', '1')));
+		assertEquals(2, dfaSwap.minimize().compile().stateCount());
+
+		String expStr = "Q = { a b }\n"
+				+ "Sigma = { 0 1 }\n"
+				+ "delta =\n"
+				+ "		0	1\n"
+				+ "	a	b	a\n"
+				+ "	b	b	a\n"
+				+ "q0 = a\n"
+				+ "F = { b }";
+		assertEquals(expStr.replaceAll("\\s", ""), dfaSwap.toString().replaceAll("\\s", ""));
+
+		//changing either DFA leaves the other alone
+		assertTrue(dfaSwap.addTransition("a", "a", '0'));
+		assertFalse(dfaSwap.accepts("010"));
+		assertTrue(dfa.accepts("101"));
+		assertTrue(dfa.setFinal("a"));
+		assertFalse(dfaSwap.accepts(""));
+
+		System.out.println("swap view pass");
+	}
+
+	@Test
+	public void testCompiled_8() {
+		DFA dfa = dfa2();
+		CompiledDFA before = dfa.compile();
+		assertTrue(dfa.addTransition("0", "3", '1'));
+		CompiledDFA after = dfa.compile();
+
+		//older versions never change
+		assertTrue(after.version() > before.version());
+		assertFalse(before.accepts("1"));
+		assertTrue(after.accepts("1"));
+		assertTrue(dfa.accepts("1"));
+
+		assertTrue(dfa.setStart("3"));
+		assertTrue(dfa.accepts(""));
+		assertFalse(after.accepts(""));
+		assertEquals(dfa.compile().version(), after.version() + 1);
+
+		System.out.println("versions pass");
+	}
+
+	@Test
+	public void testCompiled_9() throws IOException {
+		DFA dfa = dfa14().swap('1', '0');
+		Path file = Files.createTempFile("dfa", ".bin");
+		try {
+			dfa.save(file);
+			DFA loaded = DFA.load(file);
+			assertTrue(loaded.accepts("01"));
+			assertFalse(loaded.accepts("10"));
+			assertTrue(loaded.equivalentTo(dfa));
+			assertEquals(dfa.toString(), loaded.toString());
+			assertTrue(loaded.isStart("a"));
+			assertTrue(loaded.isFinal("e"));
+
+			Files.write(file, new byte[] {1, 2, 3, 4});
+			assertThrows(IOException.class, () -> DFA.load(file));
+		} finally {
+			Files.delete(file);
+		}
+
+		System.out.println("binary format pass");
+	}
+
+	@Test
+	public void testCompiled_10() throws IOException {
+		DFA dfa = dfa14();
+		DFA read = DFAReader.read(new StringReader(dfa.toString()));
+		assertEquals(dfa.toString(), read.toString());
+		assertTrue(read.equivalentTo(dfa));
+
+		//the header decides the column order of the rows
+		String text = "Q = { a b }\n"
+				+ "Sigma = { 0 1 }\n"
+				+ "delta =\n"
+				+ "		1	0\n"
+				+ "	a	b	a\n"
+				+ "	b	b	a\n"
+				+ "q0 = a\n"
+				+ "F = { b }";
+		assertTrue(DFAReader.read(new StringReader(text)).equivalentTo(dfa1()));
+
+		assertThrows(IOException.class, () -> DFAReader.read(new StringReader("Q = { a }\nSigma = { 0 }")));
+		assertThrows(IOException.class, () -> DFAReader.read(new StringReader(text.replace("q0 = a", "q0 = c"))));
+
+		System.out.println("text reader pass");
+	}
+
+	@Test
+	public void testCompiled_11() throws IOException {
+		DFA dfa = dfa14();
+		StringWriter out = new StringWriter();
+		dfa.writeTo(out);
+		assertEquals(dfa.toString(), out.toString());
+
+		//missing transitions are written and read back
+		DFA partial = dfa1();
+		assertTrue(partial.addState("c"));
+		String text = partial.toString();
+		assertTrue(text.contains("c\t- - "));
+		DFA read = DFAReader.read(new StringReader(text));
+		assertEquals(text, read.toString());
+		assertTrue(read.equivalentTo(partial));
+
+		System.out.println("writeTo pass");
+	}
+
+	@Test
+	public void testCompiled_12() {
+		DFA dfa = new DFA();
+		dfa.addState("a");
+		dfa.addState("b");
+		DFAState state = (DFAState) dfa.getState("a");
+		DFAState other = (DFAState) dfa.getState("b");
+		Map<Character, DFAState> expected = new HashMap<>();
+		Random random = new Random(361);
+		//close symbols make the state dense, far ones make it sparse again
+		for (int i = 0; i < 200; i++) {
+			char symbol = i % 50 == 49 ? (char) (1000 + i) : (char) ('a' + random.nextInt(20));
+			DFAState target = random.nextBoolean() ? state : other;
+			state.transition(symbol, target);
+			expected.putIfAbsent(symbol, target);
+			assertEquals(expected.size(), state.transitionCount());
+		}
+		for (char c = 0; c < 1300; c++) {
+			DFAState target = expected.get(c);
+			assertEquals(target == null ? CompiledDFA.REJECT : target.getId(), state.getTransitionId(c));
+		}
+
+		System.out.println("primitive transitions pass");
+	}
+
+	@Test
+	public void testCompiled_13() {
+		DFA dfa = new DFA();
+		assertFalse(dfa.isStart("a"));
+		for (String name : new String[] {"c", "a", "b"}) {
+			dfa.addState(name);
+		}
+		assertEquals(0, ((DFAState) dfa.getState("c")).getId());
+		assertEquals(2, ((DFAState) dfa.getState("b")).getId());
+		assertFalse(dfa.isStart("a"));
+		assertFalse(dfa.isFinal("z"));
+		dfa.addSigma('0');
+		dfa.addTransition("c", "b", '0');
+		dfa.setStart("c");
+		dfa.setFinal("b");
+		dfa.setFinal("a");
+		assertEquals(dfa.getState("b").getName(),
+				dfa.compile().stateName(((DFAState) dfa.getState("c")).getTransitionId('0')));
+		assertEquals(1, dfa.compile().stateId("a"));
+		assertTrue(dfa.toString().endsWith("q0 = c\nF = { b a }\n"));
+		assertTrue(dfa.accepts("0"));
+
+		System.out.println("state ids pass");
+	}
+
+	@Test
+	public void testCompiled_14() {
+		//random patterns over overlapping alphabets, some transitions missing
+		Random random = new Random(16);
+		String[] alphabets = {"01", "012", "1ab", "\u0101\u01020"};
+		List<DFA> patterns = new ArrayList<>();
+		for (int p = 0; p < 40; p++) {
+			String alphabet = alphabets[p % alphabets.length];
+			DFA dfa = new DFA();
+			for (char c : alphabet.toCharArray()) {
+				dfa.addSigma(c);
+			}
+			int n = 1 + random.nextInt(5);
+			for (int q = 0; q < n; q++) {
+				dfa.addState("q" + q);
+				if (random.nextInt(3) == 0) { dfa.setFinal("q" + q); }
+			}
+			dfa.setStart("q0");
+			for (int q = 0; q < n; q++) {
+				for (char c : alphabet.toCharArray()) {
+					if (random.nextInt(8) != 0) { dfa.addTransition("q" + q, "q" + random.nextInt(n), c); }
+				}
+			}
+			patterns.add(dfa);
+		}
+		DFASet set = new DFASet(patterns);
+		DFASet capped = new DFASet(patterns, 3);
+		assertEquals(40, set.size());
+		String symbols = "012ab\u0101\u0102x";
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder input = new StringBuilder();
+			int length = random.nextInt(12);
+			for (int j = 0; j < length; j++) {
+				input.append(symbols.charAt(random.nextInt(i % 2 == 0 ? 3 : symbols.length())));
+			}
+			BitSet expected = new BitSet();
+			for (int p = 0; p < patterns.size(); p++) {
+				if (patterns.get(p).accepts(input.toString())) { expected.set(p); }
+			}
+			assertEquals(expected, set.matches(input));
+			assertEquals(expected, capped.matches(input));
+			assertEquals(!expected.isEmpty(), set.matchesAny(input));
+		}
+		assertTrue(capped.expandedStates() <= 3);
+		assertTrue(set.expandedStates() > 3);
+
+		System.out.println("DFASet pass");
+	}
+
+	@Test
+	public void testCompiled_15() {
+		//lanes of different lengths, rejected symbols and empty inputs in one batch
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("even");
+		dfa.addState("odd");
+		dfa.setStart("even");
+		dfa.setFinal("even");
+		dfa.addTransition("even", "odd", '1');
+		dfa.addTransition("even", "even", '0');
+		dfa.addTransition("odd", "even", '1');
+		dfa.addTransition("odd", "odd", '0');
+		Random random = new Random(17);
+		for (int size : new int[] {1, 7, 9, 100, 3000}) {
+			CharSequence[] inputs = new CharSequence[size];
+			int expected = 0;
+			for (int i = 0; i < size; i++) {
+				StringBuilder input = new StringBuilder();
+				int length = random.nextInt(70);
+				for (int j = 0; j < length; j++) {
+					input.append(random.nextInt(50) == 0 ? '2' : (char) ('0' + random.nextInt(2)));
+				}
+				inputs[i] = input;
+				if (dfa.accepts(input.toString())) { expected++; }
+			}
+			boolean[] results = dfa.acceptsAll(inputs);
+			for (int i = 0; i < size; i++) {
+				assertEquals(dfa.accepts(inputs[i].toString()), results[i]);
+			}
+			assertEquals(expected, dfa.countAccepted(inputs));
+		}
+
+		System.out.println("lane batches pass");
+	}
+
+	@Test
+	public void testCompiled_16() {
+		//strings whose value in binary is divisible by 5, over inputs long enough to be split
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		for (int r = 0; r < 5; r++) {
+			dfa.addState("r" + r);
+		}
+		dfa.addState("x");
+		dfa.setStart("r0");
+		dfa.setFinal("r0");
+		for (int r = 0; r < 5; r++) {
+			dfa.addTransition("r" + r, "r" + (r * 2 % 5), '0');
+			dfa.addTransition("r" + r, "r" + ((r * 2 + 1) % 5), '1');
+		}
+		Random random = new Random(18);
+		char[] chars = new char[3_000_000];
+		for (int trial = 0; trial < 6; trial++) {
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) ('0' + random.nextInt(2));
+			}
+			if (trial == 5) {
+				chars[chars.length / 2] = '2';
+			}
+			String input = new String(chars);
+			assertEquals(dfa.accepts(input), dfa.acceptsParallel(input));
+			assertEquals(dfa.accepts(input), dfa.acceptsParallel(CharBuffer.wrap(chars)));
+		}
+		assertTrue(dfa.acceptsParallel("101"));
+		assertFalse(dfa.acceptsParallel("x"));
+
+		System.out.println("parallel accepts pass");
+	}
+
+	@Test
+	public void testCompiled_17() {
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('b');
+		dfa.addState("s");
+		dfa.addState("t");
+		dfa.setStart("s");
+		dfa.addTransition("s", "t", 'a');
+		dfa.enableResultCache(4);
+		assertFalse(dfa.accepts("a"));
+		assertFalse(dfa.accepts("a"));
+		assertEquals(1, dfa.cacheHits());
+		assertEquals(1, dfa.cacheMisses());
+		//every kind of change must empty the cache
+		dfa.setFinal("t");
+		assertTrue(dfa.accepts("a"));
+		dfa.addTransition("t", "t", 'b');
+		assertTrue(dfa.accepts("ab"));
+		dfa.setStart("t");
+		assertFalse(dfa.accepts("a"));
+		assertTrue(dfa.accepts("b"));
+		dfa.addSigma('c');
+		dfa.addTransition("t", "t", 'c');
+		assertTrue(dfa.accepts("c"));
+		dfa.addState("u");
+		assertTrue(dfa.accepts("c"));
+		assertEquals(1, dfa.cacheHits());
+		//older strings are dropped once the cache is full
+		for (int i = 0; i < 50; i++) {
+			assertTrue(dfa.accepts("b".repeat(i % 10)));
+		}
+		assertTrue(dfa.cacheMisses() > 10);
+		dfa.disableResultCache();
+		long hits = dfa.cacheHits();
+		assertTrue(dfa.accepts("b"));
+		assertEquals(hits, dfa.cacheHits());
+
+		System.out.println("result cache pass");
+	}
+
+	@Test
+	public void testCompiled_18() {
+		//paths over a/b/'/', accepted when they hold an even number of b, with '/' missing from state "odd"
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('b');
+		dfa.addSigma('/');
+		dfa.addState("even");
+		dfa.addState("odd");
+		dfa.setStart("even");
+		dfa.setFinal("even");
+		dfa.addTransition("even", "even", 'a');
+		dfa.addTransition("even", "odd", 'b');
+		dfa.addTransition("even", "even", '/');
+		dfa.addTransition("odd", "odd", 'a');
+		dfa.addTransition("odd", "even", 'b');
+		Random random = new Random(20);
+		String[] parts = {"a", "ab", "bb", "/", "/a/", "b/", "x", ""};
+		CharSequence[] inputs = new CharSequence[2000];
+		for (int i = 0; i < inputs.length; i++) {
+			StringBuilder input = new StringBuilder(i % 3 == 0 ? "/aa/ab/" : "/aa/");
+			int count = random.nextInt(6);
+			for (int j = 0; j < count; j++) {
+				input.append(parts[random.nextInt(parts.length)]);
+			}
+			inputs[i] = input.toString();
+		}
+		boolean[] shared = dfa.acceptsAllSharingPrefixes(inputs);
+		boolean[] given = dfa.acceptsAllSorted(inputs);
+		for (int i = 0; i < inputs.length; i++) {
+			assertEquals(dfa.accepts(inputs[i].toString()), shared[i]);
+			assertEquals(dfa.accepts(inputs[i].toString()), given[i]);
+		}
+		CharSequence[] sorted = inputs.clone();
+		Arrays.sort(sorted, CharSequence::compare);
+		boolean[] presorted = dfa.acceptsAllSorted(sorted);
+		for (int i = 0; i < sorted.length; i++) {
+			assertEquals(dfa.accepts(sorted[i].toString()), presorted[i]);
+		}
+		assertEquals(0, dfa.acceptsAllSorted(new CharSequence[0]).length);
+
+		System.out.println("shared prefixes pass");
+	}
+
+	@Test
+	public void testCompiled_19() {
+		//"skip until /": state "in" loops on every symbol but '/'
+		DFA dfa = new DFA();
+		for (char c : "ab/c\u0100".toCharArray()) {
+			dfa.addSigma(c);
+		}
+		dfa.addState("in");
+		dfa.addState("seen");
+		dfa.setStart("in");
+		dfa.setFinal("seen");
+		for (char c : "abc\u0100".toCharArray()) {
+			dfa.addTransition("in", "in", c);
+		}
+		dfa.addTransition("in", "seen", '/');
+		String run = "abcab".repeat(200);
+		assertFalse(dfa.accepts(run));
+		assertTrue(dfa.accepts(run + "/"));
+		assertTrue(dfa.accepts(run + "\u0100" + run + "/"));
+		assertFalse(dfa.accepts(run + "x/"));
+		assertFalse(dfa.accepts(run + "/a"));
+		//changing a looping transition after the skip tables exist
+		dfa.addTransition("in", "seen", 'c');
+		assertTrue(dfa.accepts("ababc"));
+		assertFalse(dfa.accepts("ababca"));
+		dfa.addTransition("in", "in", 'c');
+		assertFalse(dfa.accepts("ababc"));
+		assertTrue(dfa.accepts(run + "/"));
+		dfa.addTransition("seen", "seen", 'a');
+		assertTrue(dfa.accepts(run + "/" + "aaaa"));
+		DFAMatcher matcher = dfa.newMatcher();
+		assertTrue(matcher.feed(run.toCharArray(), 0, run.length()));
+		assertTrue(matcher.feed("/aa".toCharArray(), 0, 3));
+		assertTrue(matcher.isAccepting());
+
+		System.out.println("self-loop skipping pass");
+	}
+
+	@Test
+	public void testCompiled_20() throws IOException {
+		//identifiers over printable ASCII: a letter, then letters or digits
+		DFA dfa = new DFA();
+		for (char c = '!'; c <= 'z'; c++) {
+			dfa.addSigma(c);
+		}
+		dfa.addState("start");
+		dfa.addState("ident");
+		dfa.setStart("start");
+		dfa.setFinal("ident");
+		for (char c = '!'; c <= 'z'; c++) {
+			if (Character.isLetter(c)) {
+				dfa.addTransition("start", "ident", c);
+			}
+			if (Character.isLetterOrDigit(c)) {
+				dfa.addTransition("ident", "ident", c);
+			}
+		}
+		CompiledDFA engine = dfa.compile();
+		assertEquals(90, engine.symbolCount());
+		assertEquals(3, engine.columnCount());
+		assertEquals(engine.symbolIndex('a'), engine.symbolIndex('Z'));
+		assertTrue(dfa.accepts("x1y2"));
+		assertFalse(dfa.accepts("1xy"));
+		assertFalse(dfa.accepts("x-y"));
+
+		//a transition that splits a class rebuilds the table
+		dfa.addTransition("ident", "start", '_');
+		assertEquals(4, dfa.compile().columnCount());
+		assertTrue(dfa.accepts("x_y"));
+		assertFalse(dfa.accepts("x_"));
+		dfa.addTransition("ident", "ident", 'q');
+		assertTrue(dfa.accepts("xq"));
+
+		Path file = Files.createTempFile("classes", ".dfa");
+		try {
+			dfa.save(file);
+			DFA loaded = DFA.load(file);
+			assertEquals(4, loaded.compile().columnCount());
+			assertEquals(dfa.toString(), loaded.toString());
+			assertTrue(loaded.accepts("x_y9"));
+		} finally {
+			Files.delete(file);
+		}
+
+		System.out.println("symbol classes pass");
+	}
+
+	@Test
+	public void testCompiled_21() {
+		//"ab" somewhere after a leading a: "trap" can never accept, "done" accepts everything
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('b');
+		for (String name : new String[] {"start", "seek", "sawA", "done", "trap", "trap2"}) {
+			dfa.addState(name);
+		}
+		dfa.setStart("start");
+		dfa.setFinal("done");
+		dfa.addTransition("start", "seek", 'a');
+		dfa.addTransition("start", "trap", 'b');
+		dfa.addTransition("seek", "sawA", 'a');
+		dfa.addTransition("seek", "seek", 'b');
+		dfa.addTransition("sawA", "sawA", 'a');
+		dfa.addTransition("sawA", "done", 'b');
+		dfa.addTransition("done", "done", 'a');
+		dfa.addTransition("done", "done", 'b');
+		dfa.addTransition("trap", "trap2", 'a');
+		dfa.addTransition("trap2", "trap", 'a');
+		dfa.addTransition("trap2", "trap2", 'b');
+		String tail = "ba".repeat(50_000);
+		for (int i = 0; i < 3; i++) {
+			assertFalse(dfa.accepts("b" + tail));
+			assertTrue(dfa.accepts("aab" + tail));
+			assertFalse(dfa.accepts("aab" + tail + "c"));
+			assertFalse(dfa.accepts("a" + "b".repeat(100_000)));
+			assertTrue(dfa.accepts("a" + "b".repeat(100_000) + "ab"));
+		}
+		CharSequence[] batch = {"b" + tail, "aab" + tail, "aab" + tail + "c", "ab", "aab"};
+		boolean[] results = dfa.acceptsAll(batch);
+		assertArrayEquals(new boolean[] {false, true, false, false, true}, results);
+		//the sink stops being one once a way out is added
+		dfa.addState("out");
+		dfa.addTransition("done", "out", 'a');
+		assertFalse(dfa.accepts("aab" + tail));
+		assertTrue(dfa.accepts("aabb"));
+		dfa.setFinal("trap");
+		assertTrue(dfa.accepts("baa"));
+
+		System.out.println("early termination pass");
+	}
+
+	@Test
+	public void testCompiled_22() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		for (String name : new String[] {"a", "lost", "b", "dead", "c"}) {
+			dfa.addState(name);
+		}
+		dfa.setStart("a");
+		dfa.setFinal("c");
+		dfa.setFinal("lost");
+		dfa.addTransition("a", "b", '0');
+		dfa.addTransition("a", "dead", '1');
+		dfa.addTransition("b", "c", '1');
+		dfa.addTransition("dead", "dead", '0');
+		dfa.addTransition("lost", "a", '0');
+		dfa.addTransition("c", "c", '0');
+		DFA trimmed = dfa.trim();
+		String expStr = "Q = { a b c }\n"
+				+ "Sigma = { 0 1 }\n"
+				+ "delta =\n"
+				+ "		0	1\n"
+				+ "	a	b	-\n"
+				+ "	b	-	c\n"
+				+ "	c	c	-\n"
+				+ "q0 = a\n"
+				+ "F = { c }";
+		assertEquals(expStr.replaceAll("\\s", ""), trimmed.toString().replaceAll("\\s", ""));
+		assertTrue(trimmed.equivalentTo(dfa));
+		assertNull(trimmed.getState("lost"));
+
+		//a chain far deeper than any call stack, every other state unreachable
+		DFA chain = new DFA();
+		chain.addSigma('x');
+		int n = 400_000;
+		for (int i = 0; i < n; i++) {
+			chain.addState("q" + i);
+		}
+		chain.setStart("q0");
+		chain.setFinal("q" + (n - 2));
+		for (int i = 0; i + 2 < n; i += 2) {
+			chain.addTransition("q" + i, "q" + (i + 2), 'x');
+		}
+		DFA small = chain.trim();
+		assertEquals(n / 2, small.compile().stateCount());
+		assertTrue(small.accepts("x".repeat(n / 2 - 1)));
+		assertFalse(small.accepts("x".repeat(n / 2)));
+
+		DFA none = new DFA();
+		none.addSigma('0');
+		none.addState("s");
+		assertEquals(0, none.trim().compile().stateCount());
+
+		System.out.println("trim pass");
+	}
+
+	@Test
+	public void testCompiled_23() throws InterruptedException {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("a");
+		dfa.addState("b");
+		dfa.addState("c");
+		dfa.setStart("a");
+		dfa.setFinal("c");
+		dfa.addTransition("a", "b", '0');
+		dfa.addTransition("b", "c", '1');
+		dfa.addTransition("c", "c", '0');
+
+		assertNull(dfa.profile());
+		dfa.enableProfiling();
+		assertTrue(dfa.accepts("01"));
+		assertTrue(dfa.accepts("0100"));
+		assertFalse(dfa.accepts("1"));
+		DFAProfile profile = dfa.profile();
+		assertEquals(3, profile.visits("a"));
+		assertEquals(2, profile.visits("b"));
+		assertEquals(4, profile.visits("c"));
+		assertEquals(9, profile.totalVisits());
+		assertEquals(2, profile.traversals("a", '0'));
+		assertEquals(0, profile.traversals("a", '1'));
+		assertEquals(2, profile.traversals("c", '0'));
+		assertEquals(0, profile.visits("missing"));
+		assertEquals(List.of("c", "a"), profile.hottestStates(2));
+
+		//a snapshot does not change, and counts carry over a change to the DFA
+		assertTrue(dfa.accepts("010"));
+		assertEquals(3, profile.visits("a"));
+		dfa.addState("d");
+		dfa.addTransition("c", "d", '1');
+		assertFalse(dfa.accepts("011"));
+		profile = dfa.profile();
+		assertEquals(5, profile.visits("a"));
+		assertEquals(1, profile.visits("d"));
+		assertEquals(1, profile.traversals("c", '1'));
+
+		//threads count on their own and the snapshot adds them up
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					dfa.accepts("01");
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(4005, dfa.profile().visits("a"));
+		assertEquals(4004, dfa.profile().traversals("b", '1'));
+
+		//profiled calls are not answered from the result cache
+		dfa.enableResultCache(16);
+		dfa.accepts("01");
+		assertEquals(0, dfa.cacheHits() + dfa.cacheMisses());
+
+		dfa.disableProfiling();
+		assertNull(dfa.profile());
+		assertTrue(dfa.accepts("01"));
+		dfa.enableProfiling();
+		assertEquals(0, dfa.profile().totalVisits());
+
+		System.out.println("profiling pass");
+	}
+
+	@Test
+	public void testCompiled_24() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("a");
+		dfa.addState("b");
+		dfa.setStart("a");
+		dfa.setFinal("b");
+		dfa.addTransition("a", "b", '1');
+		dfa.addTransition("b", "a", '0');
+
+		//states taken from a DFA keep their transitions, in any map order, with fresh ids
+		HashMap<String, DFAState> states = new LinkedHashMap<>();
+		states.put("b", (DFAState) dfa.getState("b"));
+		states.put("c", new DFAState("c"));
+		states.put("a", (DFAState) dfa.getState("a"));
+		DFA copy = new DFA(dfa.getSigma(), states, new TreeSet<>(List.of("b")), "a");
+		assertTrue(copy.accepts("1"));
+		assertTrue(copy.accepts("101"));
+		assertFalse(copy.accepts("10"));
+		assertEquals(0, ((DFAState) copy.getState("b")).getId());
+		assertEquals(1, ((DFAState) copy.getState("c")).getId());
+		assertEquals(dfa.compile().stateCount() + 1, copy.compile().stateCount());
+
+		//a target that is not among the given states is refused
+		HashMap<String, DFAState> partial = new HashMap<>();
+		partial.put("a", (DFAState) dfa.getState("a"));
+		assertThrows(IllegalArgumentException.class, () -> new DFA(dfa.getSigma(), partial, new TreeSet<>(), "a"));
+
+		//a state that belongs to no DFA cannot be a target
+		DFAState loose = new DFAState("x");
+		assertThrows(IllegalArgumentException.class, () -> loose.transition('0', new DFAState("y")));
+		assertThrows(IllegalArgumentException.class, () -> loose.transition('0', loose));
+		assertThrows(IllegalArgumentException.class, () -> loose.transition('0', dfa.getState("a")));
+		assertEquals(0, loose.transitionCount());
+
+		//nor can a state of another DFA, even when a state here has its id
+		DFA other = new DFA();
+		other.addSigma('0');
+		other.addState("x");
+		other.addState("y");
+		other.setStart("x");
+		other.setFinal("y");
+		DFAState x = (DFAState) other.getState("x");
+		assertThrows(IllegalArgumentException.class, () -> x.transition('0', dfa.getState("b")));
+		assertEquals(0, x.transitionCount());
+		assertFalse(other.accepts("0"));
+		HashMap<String, DFAState> mixed = new LinkedHashMap<>();
+		mixed.put("a", (DFAState) dfa.getState("a"));
+		mixed.put("y", (DFAState) other.getState("y"));
+		assertThrows(IllegalArgumentException.class, () -> new DFA(dfa.getSigma(), mixed, new TreeSet<>(), "a"));
+
+		System.out.println("constructor ids pass");
+	}
+
+	@Test
+	public void testCompiled_25() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addState("a");
+		dfa.setStart("a");
+		dfa.setFinal("a");
+		dfa.addTransition("a", "a", '0');
+		CompiledDFA first = dfa.compile();
+		assertTrue(first.accepts("000"));
+
+		//adding a state or symbol publishes the next version and leaves the last one alone
+		for (int i = 0; i < 300; i++) {
+			dfa.addState("s" + i);
+		}
+		CompiledDFA grown = dfa.compile();
+		assertEquals(1, first.stateCount());
+		assertEquals(301, grown.stateCount());
+		assertEquals(first.version() + 300, grown.version());
+		assertEquals(300, grown.stateId("s299"));
+		assertEquals("s299", grown.stateName(300));
+		assertEquals(CompiledDFA.REJECT, first.stateId("s299"));
+		dfa.addTransition("a", "s299", '0');
+		dfa.setFinal("s299");
+		assertTrue(dfa.accepts("0"));
+		assertFalse(dfa.accepts("00"));
+		assertTrue(grown.accepts("00"));
+
+		dfa.addSigma('1');              //rejected from every state, so it joins no column
+		assertEquals(2, dfa.compile().columnCount());
+		assertFalse(dfa.accepts("1"));
+		dfa.addSigma('2');              //shares the column of 1
+		assertEquals(2, dfa.compile().columnCount());
+		assertEquals(3, dfa.compile().symbolCount());
+		dfa.addTransition("a", "s0", '2');
+		dfa.addTransition("s0", "s299", '1');
+		assertTrue(dfa.accepts("21"));
+		assertFalse(dfa.accepts("12"));
+		assertEquals(1, grown.symbolCount());
+
+		System.out.println("published growth pass");
+	}
+
+	@Test
+	public void testCompiled_26() throws IOException {
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('b');
+		dfa.addSigma('c');
+		for (int i = 0; i < 200; i++) {
+			dfa.addState("q" + i);
+		}
+		dfa.setStart("q0");
+		dfa.setFinal("q1");
+		for (int i = 0; i < 200; i++) {
+			for (char c = 'a'; c <= 'c'; c++) {
+				dfa.addTransition("q" + i, "q" + ((i + 1) % 200), c);
+			}
+		}
+		CompiledDFA shared = dfa.compile();
+		assertEquals(1, shared.columnCount());
+
+		//a transition that splits a class is published at once, with a column of its own
+		dfa.addTransition("q0", "q5", 'b');
+		CompiledDFA split = dfa.compile();
+		assertEquals(shared.version() + 1, split.version());
+		assertEquals(2, split.columnCount());
+		assertEquals(1, shared.columnCount());
+		assertTrue(dfa.accepts("a"));
+		assertTrue(dfa.accepts("c"));
+		assertFalse(dfa.accepts("b"));
+		assertTrue(shared.accepts("b"));
+		assertTrue(dfa.accepts("b" + "a".repeat(196)));
+		dfa.addTransition("q0", "q5", 'c');     //splits c from a as well
+		assertEquals(3, dfa.compile().columnCount());
+		assertFalse(dfa.accepts("c"));
+		assertTrue(dfa.accepts("a"));
+		assertTrue(dfa.equivalentTo(DFAReader.read(new StringReader(dfa.toString()))));
+
+		System.out.println("class split pass");
+	}
+
+	@Test
+	public void testCompiled_27() {
+		//every state waits on itself until '/', then moves on to the next
+		DFA dfa = new DFA();
+		for (char c : "ab/".toCharArray()) {
+			dfa.addSigma(c);
+		}
+		int n = 130;
+		for (int i = 0; i < n; i++) {
+			dfa.addState("q" + i);
+		}
+		dfa.setStart("q0");
+		dfa.setFinal("q" + (n - 1));
+		for (int i = 0; i < n; i++) {
+			dfa.addTransition("q" + i, "q" + i, 'a');
+			dfa.addTransition("q" + i, "q" + i, 'b');
+			if (i + 1 < n) {
+				dfa.addTransition("q" + i, "q" + (i + 1), '/');
+			}
+		}
+		//short inputs are answered before the skip tables are worth building
+		String slashes = "/".repeat(n - 1);
+		assertTrue(dfa.accepts(slashes));
+		assertFalse(dfa.accepts("ab/"));
+		//long inputs build them, and states added afterwards extend them
+		String wait = "ab".repeat(500);
+		assertTrue(dfa.accepts(wait + slashes + wait));
+		assertFalse(dfa.accepts(wait + slashes + "/"));
+		dfa.addState("q" + n);
+		dfa.addTransition("q" + (n - 1), "q" + n, '/');
+		dfa.addTransition("q" + n, "q" + n, 'a');
+		dfa.setFinal("q" + n);
+		assertTrue(dfa.accepts(wait + slashes + "/" + wait.replace("b", "a")));
+		assertFalse(dfa.accepts(wait + slashes + "/" + wait));
+
+		System.out.println("skip table budget pass");
+	}
+
+	@Test
+	public void testCompiled_28() {
+		//a and b lead everywhere together, so they share a column but not a count
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('b');
+		dfa.addSigma('c');
+		int n = 5000;
+		for (int i = 0; i < n; i++) {
+			dfa.addState("q" + i);
+		}
+		dfa.setStart("q0");
+		dfa.setFinal("q" + (n - 1));
+		for (int i = 0; i + 1 < n; i++) {
+			dfa.addTransition("q" + i, "q" + (i + 1), 'a');
+			dfa.addTransition("q" + i, "q" + (i + 1), 'b');
+			dfa.addTransition("q" + i, "q0", 'c');
+		}
+		dfa.enableProfiling();
+		String walk = "ab".repeat((n - 1) / 2) + "a";
+		assertTrue(dfa.accepts(walk));
+		assertFalse(dfa.accepts("aac"));
+		DFAProfile profile = dfa.profile();
+		assertEquals(n + 4, profile.totalVisits());
+		assertEquals(3, profile.visits("q0"));
+		assertEquals(1, profile.visits("q" + (n - 1)));
+		assertEquals(2, profile.traversals("q0", 'a'));
+		assertEquals(0, profile.traversals("q0", 'b'));
+		assertEquals(1, profile.traversals("q1", 'a'));
+		assertEquals(1, profile.traversals("q1", 'b'));
+		assertEquals(1, profile.traversals("q2", 'c'));
+		assertEquals(0, profile.traversals("q0", 'z'));
+		assertEquals(List.of("q0", "q1", "q2"), profile.hottestStates(3));
+		assertTrue(profile.toString().startsWith("q0 3 a=2\nq1 2 a=1 b=1\n"));
+
+		System.out.println("sparse profiling pass");
+	}
+
+	@Test
+	public void testCompiled_29() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("a");
+		dfa.addState("b");
+		dfa.setStart("a");
+		dfa.setFinal("b");
+		dfa.addTransition("a", "a", '0');
+		dfa.enableResultCache(16);
+		CompiledDFA before = dfa.compile();
+		assertFalse(dfa.accepts("1"));
+
+		//a transition added through the state reaches the compiled DFA and the cache
+		((DFAState) dfa.getState("a")).transition('1', dfa.getState("b"));
+		assertTrue(dfa.accepts("1"));
+		assertTrue(dfa.accepts("001"));
+		assertFalse(before.accepts("1"));
+		assertEquals(before.version() + 1, dfa.compile().version());
+		//an existing transition is kept
+		((DFAState) dfa.getState("a")).transition('1', dfa.getState("a"));
+		assertTrue(dfa.accepts("1"));
+		assertEquals(before.version() + 1, dfa.compile().version());
+
+		//a symbol outside Sigma is only read once it is added
+		((DFAState) dfa.getState("b")).transition('2', dfa.getState("b"));
+		assertFalse(dfa.accepts("12"));
+		dfa.addSigma('2');
+		assertTrue(dfa.accepts("122"));
+
+		System.out.println("state transitions after compile pass");
+	}
+
+	@Test
+	public void testCompiled_30() {
+		DFA dfa = new DFA();
+		dfa.addState("a");
+		dfa.addState("b");
+		DFAState state = (DFAState) dfa.getState("a");
+		DFAState other = (DFAState) dfa.getState("b");
+		//symbols added in order widen the direct array instead of going back to sorted keys
+		for (char c = 'a'; c <= 'z'; c++) {
+			state.transition(c, c % 2 == 0 ? state : other);
+		}
+		for (char c = '\uffe0'; c != 0; c++) {
+			other.transition(c, state);
+		}
+		other.transition('\uffd0', other);
+		assertEquals(26, state.transitionCount());
+		assertEquals(33, other.transitionCount());
+		for (char c = 'a' - 5; c <= 'z' + 50; c++) {
+			int expected = c < 'a' || c > 'z' ? CompiledDFA.REJECT : c % 2 == 0 ? state.getId() : other.getId();
+			assertEquals(expected, state.getTransitionId(c));
+		}
+		assertEquals(state.getId(), other.getTransitionId('\uffff'));
+		assertEquals(other.getId(), other.getTransitionId('\uffd0'));
+		assertEquals(CompiledDFA.REJECT, other.getTransitionId('\uffdf'));
+
+		System.out.println("dense widening pass");
+	}
+
+	@Test
+	public void testCompiled_31() throws IOException {
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('b');
+		dfa.addState("x");
+		dfa.addState("y");
+		dfa.setStart("x");
+		dfa.setFinal("y");
+		dfa.addTransition("x", "y", 'a');
+		dfa.addTransition("y", "x", 'b');
+		Path file = Files.createTempFile("dfa", ".bin");
+		try {
+			dfa.save(file);
+			byte[] good = Files.readAllBytes(file);
+			assertTrue(DFA.load(file).accepts("aba"));
+
+			//ints of the file: magic, version, |Q|, |Sigma|, columns, start, symbols, columns of
+			//the symbols, final bits, table, name length, name offsets, names
+			int[][] damage = {
+					{2, -5},            //negative |Q|
+					{2, 1 << 28},       //|Q| far beyond the end of the file
+					{3, -1},            //negative |Sigma|
+					{4, 3},             //more columns than symbols
+					{5, 2},             //start state out of range
+					{6, 0x10000},       //symbol that is not a char
+					{7, 'a'},           //symbol given twice
+					{8, 2},             //symbol column out of range
+					{11, 7},            //transition out of range
+					{12, -2},           //transition below REJECT
+					{15, 3},            //name length that is not where the offsets end
+					{16, 1},            //first name offset not 0
+					{17, 4},            //name offsets going back
+			};
+			for (int[] change : damage) {
+				byte[] bad = good.clone();
+				ByteBuffer.wrap(bad).putInt(change[0] * 4, change[1]);
+				Files.write(file, bad);
+				IOException e = assertThrows(IOException.class, () -> DFA.load(file), "int " + change[0]);
+				assertTrue(e.getMessage().contains("not a valid DFA file"), e.getMessage());
+			}
+			Files.write(file, Arrays.copyOf(good, good.length - 4));
+			assertThrows(IOException.class, () -> DFA.load(file));
+		} finally {
+			Files.delete(file);
+		}
+
+		System.out.println("damaged binary files pass");
+	}
+
+	@Test
+	public void testCompiled_32() throws IOException {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		String[] names = {"-", "null", "}", "\\x", "\\", "a-"};
+		for (String name : names) {
+			dfa.addState(name);
+		}
+		dfa.addTransition("-", "null", '0');
+		dfa.addTransition("null", "}", '0');
+		dfa.addTransition("}", "\\x", '1');
+		dfa.addTransition("\\x", "-", '1');
+		dfa.addTransition("\\", "a-", '0');
+		dfa.setFinal("}");
+		dfa.setFinal("-");
+		dfa.setFinal("\\");
+
+		//no start state, and states named like the tokens of toString
+		DFA read = DFAReader.read(new StringReader(dfa.toString()));
+		assertEquals(dfa.toString(), read.toString());
+		CompiledDFA before = dfa.compile();
+		CompiledDFA after = read.compile();
+		for (String name : names) {
+			assertEquals(dfa.isFinal(name), read.isFinal(name));
+			for (char c = '0'; c <= '1'; c++) {
+				int to = before.next(before.stateId(name), before.symbolIndex(c));
+				int readTo = after.next(after.stateId(name), after.symbolIndex(c));
+				assertEquals(to == CompiledDFA.REJECT ? null : before.stateName(to),
+						readTo == CompiledDFA.REJECT ? null : after.stateName(readTo));
+			}
+		}
+		assertFalse(read.accepts("0"));
+
+		dfa.setStart("-");
+		read = DFAReader.read(new StringReader(dfa.toString()));
+		assertTrue(read.equivalentTo(dfa));
+		assertTrue(read.accepts(""));
+		assertFalse(read.accepts("0"));
+		assertTrue(read.accepts("00"));
+		assertTrue(read.accepts("0011"));
+		assertEquals("-", read.compile().stateName(read.compile().startState()));
+
+		System.out.println("escaped state names pass");
+	}
+
+	@Test
+	public void testCompiled_33() throws InterruptedException {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("a");
+		dfa.addState("b");
+		dfa.setStart("a");
+		dfa.setFinal("b");
+		dfa.addTransition("a", "b", '1');
+
+		//a cache renewed after a change never brings back one that was disabled meanwhile
+		Thread[] threads = new Thread[4];
+		AtomicBoolean done = new AtomicBoolean();
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				while (!done.get()) {
+					dfa.accepts("1");
+				}
+			});
+			threads[t].start();
+		}
+		for (int i = 0; i < 2000; i++) {
+			dfa.enableResultCache(4);
+			dfa.addState("s" + i);      //makes every cached answer stale
+			dfa.disableResultCache();
+		}
+		done.set(true);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long calls = dfa.cacheHits() + dfa.cacheMisses();
+		for (int i = 0; i < 10; i++) {
+			assertTrue(dfa.accepts("1"));
+		}
+		assertEquals(calls, dfa.cacheHits() + dfa.cacheMisses());
+
+		System.out.println("result cache disabled while renewing pass");
+	}
+
+}